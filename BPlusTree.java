@@ -0,0 +1,516 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Samuel Bernheim
+ * This is a B+ tree which keeps its elements in order like the Binary Search AVL type tree, but stores up to MAX_KEYS
+ * of them next to each other in every node. Each node is searched with a binary search over its sorted key array, so a
+ * lookup touches a few wide nodes instead of one small node per level. All the elements live in the leaves, which are
+ * linked together in ascending order so range scans never have to go back up the tree.
+ */
+
+public class BPlusTree<E extends Comparable<E>> implements Iterable<E> {
+
+    private static final int MAX_KEYS = 64;
+    private static final int MIN_KEYS = MAX_KEYS / 2;
+
+    private Node root = new Leaf();
+    private int size;
+    // the separator handed up to the parent when a node splits
+    private Object promoted;
+
+    public BPlusTree() {
+
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the number of elements in the tree
+     * @return an integer representing the number of elements in the tree
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Determines if the tree contains any elements.
+     * @return true or false
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Searches the tree for the data the user specifies
+     * @param e the data the user is searching for
+     * @return true or false if e is in the tree or not
+     */
+    public boolean search(E e) {
+        Leaf leaf = findLeaf(e);
+        int i = lowerBound(leaf, e);
+        return i < leaf.count && compare(leaf.keys[i], e) == 0;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the smallest data in the tree
+     * @return the minimum or null if the tree is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E findMin() {
+        if (isEmpty()){
+            return null;
+        }
+
+        Node node = root;
+        while (node instanceof Internal){
+            node = ((Internal) node).children[0];
+        }
+        return (E) node.keys[0];
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the largest data in the tree
+     * @return the maximum or null if the tree is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E findMax() {
+        if (isEmpty()){
+            return null;
+        }
+
+        Node node = root;
+        while (node instanceof Internal){
+            node = ((Internal) node).children[node.count];
+        }
+        return (E) node.keys[node.count - 1];
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Inserts e into the tree, splitting every node on the way back up which has grown past MAX_KEYS
+     * @param e the data which will be inserted into the tree
+     * @return true if e was inserted or false if it was already in the tree
+     */
+    public boolean insert(E e) {
+        if (e == null){
+            throw new NullPointerException("A tree cannot hold null");
+        }
+
+        int before = size;
+        Node sibling = insert(root, e);
+
+        // the root itself split, so the tree grows by one level
+        if (sibling != null){
+            Internal newRoot = new Internal();
+            newRoot.keys[0] = promoted;
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.count = 1;
+            root = newRoot;
+            promoted = null;
+        }
+        return size != before;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Deletes e from the tree, refilling every node on the way back up which has dropped below MIN_KEYS by borrowing
+     * from or merging with one of its siblings
+     * @param e the data which will be deleted from the tree
+     * @return true if e was deleted or false if it was not in the tree
+     */
+    public boolean delete(E e) {
+        if (!delete(root, e)){
+            return false;
+        }
+
+        // the root lost its last separator, so the tree shrinks by one level
+        if (root instanceof Internal && root.count == 0){
+            root = ((Internal) root).children[0];
+        }
+        return true;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Returns an iterator over the data in this tree in ascending order, following the links between the leaves
+     * @return an in order iterator over the tree
+     */
+    public Iterator<E> iterator() {
+        Node node = root;
+        while (node instanceof Internal){
+            node = ((Internal) node).children[0];
+        }
+        return new LeafIterator((Leaf) node, 0, null);
+    }
+
+    /**
+     * Running Time --> O(log n + k) where k is the number of elements in the range
+     * Gives a view of the data between lo and hi, both ends included, in ascending order. The view is lazy: the
+     * leaf holding lo is only looked up when iteration starts and the data is streamed from the leaves.
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return an iterable over the data e with lo <= e <= hi
+     */
+    public Iterable<E> subRange(E lo, E hi) {
+        return () -> {
+            Leaf leaf = findLeaf(lo);
+            return new LeafIterator(leaf, lowerBound(leaf, lo), hi);
+        };
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Inserts e into the subtree rooted at node
+     * @param node the root of the subtree
+     * @param e the data which will be inserted
+     * @return the new right sibling of node if node had to split, with the separator left in promoted, or null
+     */
+    private Node insert(Node node, E e) {
+        if (node instanceof Leaf){
+            Leaf leaf = (Leaf) node;
+            int i = lowerBound(leaf, e);
+            if (i < leaf.count && compare(leaf.keys[i], e) == 0){
+                return null;
+            }
+
+            System.arraycopy(leaf.keys, i, leaf.keys, i + 1, leaf.count - i);
+            leaf.keys[i] = e;
+            leaf.count++;
+            size++;
+            return leaf.count > MAX_KEYS ? splitLeaf(leaf) : null;
+        }
+
+        Internal internal = (Internal) node;
+        int i = upperBound(internal, e);
+        Node sibling = insert(internal.children[i], e);
+        if (sibling == null){
+            return null;
+        }
+
+        // the child split, so its new sibling and the separator between them go right after it
+        System.arraycopy(internal.keys, i, internal.keys, i + 1, internal.count - i);
+        System.arraycopy(internal.children, i + 1, internal.children, i + 2, internal.count - i);
+        internal.keys[i] = promoted;
+        internal.children[i + 1] = sibling;
+        internal.count++;
+        return internal.count > MAX_KEYS ? splitInternal(internal) : null;
+    }
+
+    /**
+     * Running Time --> O(MAX_KEYS)
+     * Moves the upper half of an overfull leaf into a new leaf linked in right after it. The first key of the new
+     * leaf is copied up to the parent as the separator.
+     * @param leaf the leaf to split
+     * @return the new leaf
+     */
+    private Leaf splitLeaf(Leaf leaf) {
+        int mid = leaf.count / 2;
+        Leaf right = new Leaf();
+        right.count = leaf.count - mid;
+        System.arraycopy(leaf.keys, mid, right.keys, 0, right.count);
+        clear(leaf.keys, mid, leaf.count);
+        leaf.count = mid;
+
+        right.next = leaf.next;
+        leaf.next = right;
+        promoted = right.keys[0];
+        return right;
+    }
+
+    /**
+     * Running Time --> O(MAX_KEYS)
+     * Moves the upper half of an overfull internal node into a new node. The middle separator moves up to the parent.
+     * @param node the internal node to split
+     * @return the new internal node
+     */
+    private Internal splitInternal(Internal node) {
+        int mid = node.count / 2;
+        Internal right = new Internal();
+        right.count = node.count - mid - 1;
+        System.arraycopy(node.keys, mid + 1, right.keys, 0, right.count);
+        System.arraycopy(node.children, mid + 1, right.children, 0, right.count + 1);
+        promoted = node.keys[mid];
+
+        clear(node.keys, mid, node.count);
+        clear(node.children, mid + 1, node.count + 1);
+        node.count = mid;
+        return right;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Deletes e from the subtree rooted at node
+     * @param node the root of the subtree
+     * @param e the data which will be deleted
+     * @return true if e was deleted or false if it was not in the subtree
+     */
+    private boolean delete(Node node, E e) {
+        if (node instanceof Leaf){
+            int i = lowerBound(node, e);
+            if (i == node.count || compare(node.keys[i], e) != 0){
+                return false;
+            }
+
+            System.arraycopy(node.keys, i + 1, node.keys, i, node.count - i - 1);
+            node.keys[--node.count] = null;
+            size--;
+            return true;
+        }
+
+        Internal internal = (Internal) node;
+        int i = upperBound(internal, e);
+        if (!delete(internal.children[i], e)){
+            return false;
+        }
+
+        if (internal.children[i].count < MIN_KEYS){
+            refill(internal, i);
+        }
+        return true;
+    }
+
+    /**
+     * Running Time --> O(MAX_KEYS)
+     * Brings a child which dropped below MIN_KEYS back up by borrowing a key from a sibling that can spare one, or
+     * otherwise by merging it with a sibling
+     * @param parent the parent of the underfull child
+     * @param i the index of the underfull child
+     */
+    private void refill(Internal parent, int i) {
+        Node child = parent.children[i];
+        Node left = i > 0 ? parent.children[i - 1] : null;
+        Node right = i < parent.count ? parent.children[i + 1] : null;
+
+        if (left != null && left.count > MIN_KEYS){
+            System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+            if (child instanceof Leaf){
+                child.keys[0] = left.keys[left.count - 1];
+                parent.keys[i - 1] = child.keys[0];
+            } else {
+                Internal c = (Internal) child;
+                Internal l = (Internal) left;
+                System.arraycopy(c.children, 0, c.children, 1, c.count + 1);
+                c.keys[0] = parent.keys[i - 1];
+                c.children[0] = l.children[l.count];
+                l.children[l.count] = null;
+                parent.keys[i - 1] = l.keys[l.count - 1];
+            }
+            left.keys[--left.count] = null;
+            child.count++;
+        } else if (right != null && right.count > MIN_KEYS){
+            if (child instanceof Leaf){
+                child.keys[child.count] = right.keys[0];
+                System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+                parent.keys[i] = right.keys[0];
+            } else {
+                Internal c = (Internal) child;
+                Internal r = (Internal) right;
+                c.keys[c.count] = parent.keys[i];
+                c.children[c.count + 1] = r.children[0];
+                parent.keys[i] = r.keys[0];
+                System.arraycopy(r.keys, 1, r.keys, 0, r.count - 1);
+                System.arraycopy(r.children, 1, r.children, 0, r.count);
+                r.children[r.count] = null;
+            }
+            right.keys[--right.count] = null;
+            child.count++;
+        } else if (left != null){
+            merge(parent, i - 1);
+        } else {
+            merge(parent, i);
+        }
+    }
+
+    /**
+     * Running Time --> O(MAX_KEYS)
+     * Merges two neighbouring children of a node into the left one and removes the separator between them
+     * @param parent the parent of the two children
+     * @param j the index of the left child
+     */
+    private void merge(Internal parent, int j) {
+        Node left = parent.children[j];
+        Node right = parent.children[j + 1];
+
+        if (left instanceof Leaf){
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            left.count += right.count;
+            ((Leaf) left).next = ((Leaf) right).next;
+        } else {
+            // the separator comes down between the keys of the two internal nodes
+            left.keys[left.count] = parent.keys[j];
+            System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+            System.arraycopy(((Internal) right).children, 0, ((Internal) left).children, left.count + 1,
+                    right.count + 1);
+            left.count += right.count + 1;
+        }
+
+        System.arraycopy(parent.keys, j + 1, parent.keys, j, parent.count - j - 1);
+        System.arraycopy(parent.children, j + 2, parent.children, j + 1, parent.count - j - 1);
+        parent.keys[parent.count - 1] = null;
+        parent.children[parent.count] = null;
+        parent.count--;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Walks down from the root to the leaf where e is or would be
+     * @param e the data to look for
+     * @return the leaf which covers e
+     */
+    private Leaf findLeaf(E e) {
+        Node node = root;
+        while (node instanceof Internal){
+            node = ((Internal) node).children[upperBound(node, e)];
+        }
+        return (Leaf) node;
+    }
+
+    /**
+     * Running Time --> O(log MAX_KEYS)
+     * Binary searches the keys of a node for the first key which is larger than or equal to e
+     * @param node the node to search
+     * @param e the data to search for
+     * @return the index of that key, or the number of keys if every key is smaller than e
+     */
+    private int lowerBound(Node node, E e) {
+        int lo = 0;
+        int hi = node.count;
+        while (lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if (compare(node.keys[mid], e) < 0){
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Running Time --> O(log MAX_KEYS)
+     * Binary searches the keys of a node for the first key which is strictly larger than e. In an internal node this
+     * is the index of the child whose subtree covers e.
+     * @param node the node to search
+     * @param e the data to search for
+     * @return the index of that key, or the number of keys if no key is larger than e
+     */
+    private int upperBound(Node node, E e) {
+        int lo = 0;
+        int hi = node.count;
+        while (lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if (compare(node.keys[mid], e) <= 0){
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Compares a key stored in a node to e
+     * @param key the stored key
+     * @param e the data to compare against
+     * @return a negative number, zero or a positive number as the key is smaller than, equal to or larger than e
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(Object key, E e) {
+        return ((E) key).compareTo(e);
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Sets a range of an array to null so removed references do not keep garbage alive
+     * @param array the array to clear
+     * @param from the first index to clear
+     * @param to the index after the last one to clear
+     */
+    private static void clear(Object[] array, int from, int to) {
+        for (int i = from; i < to; i++){
+            array[i] = null;
+        }
+    }
+
+    /**
+     * A node of the tree. Each array has room for one more entry than a node may keep, which lets a node overflow
+     * before it is split.
+     */
+    private static class Node {
+        final Object[] keys = new Object[MAX_KEYS + 1];
+        int count;
+    }
+
+    /**
+     * A leaf holds the elements themselves along with a link to the next leaf in order.
+     */
+    private static class Leaf extends Node {
+        Leaf next;
+    }
+
+    /**
+     * An internal node holds count separators and count + 1 children. Every element in children[i] is smaller than
+     * keys[i], which is smaller than or equal to every element in children[i + 1].
+     */
+    private static class Internal extends Node {
+        final Node[] children = new Node[MAX_KEYS + 2];
+    }
+
+    /**
+     * An iterator which walks along the linked leaves, optionally stopping at the first element larger than hi.
+     */
+    private class LeafIterator implements Iterator<E> {
+        private Leaf leaf;
+        private int index;
+        private final E hi;
+
+        LeafIterator(Leaf leaf, int index, E hi) {
+            this.leaf = leaf;
+            this.index = index;
+            this.hi = hi;
+            skipEmpty();
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Determines if there is data left to iterate over
+         * @return true or false
+         */
+        public boolean hasNext() {
+            return leaf != null && (hi == null || compare(leaf.keys[index], hi) <= 0);
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Returns the next data in order and advances the iterator
+         * @return the next data in the tree
+         */
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()){
+                throw new NoSuchElementException();
+            }
+
+            E e = (E) leaf.keys[index++];
+            skipEmpty();
+            return e;
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Moves on to the next leaf once every key of the current one has been handed out
+         */
+        private void skipEmpty() {
+            while (leaf != null && index >= leaf.count){
+                leaf = leaf.next;
+                index = 0;
+            }
+        }
+    }
+}
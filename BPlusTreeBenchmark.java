@@ -0,0 +1,229 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This compares BPlusTree against the Binary Search AVL type tree at a million, ten million and fifty million keys.
+ * For each size both trees are built from the same keys in random order, then searched for every key in another
+ * random order, searched for keys which are not in them, scanned over short ranges and iterated from end to end. The
+ * heap each tree takes up is printed too. The trees are built one at a time so only one of them is on the heap at
+ * once, but fifty million boxed keys still need a heap of around 4.5GB for the binary search tree.
+ *
+ * Usage: java -Xmx5g BPlusTreeBenchmark [key counts, e.g. 1000000 10000000 50000000]
+ */
+
+
+import java.util.SplittableRandom;
+
+public class BPlusTreeBenchmark {
+
+    // the number of short range scans and the number of keys in each
+    private static final int RANGES = 100_000;
+    private static final int RANGE_LENGTH = 100;
+
+    // keeps the results of the searches alive so the JIT compiler cannot drop them
+    private static long sink;
+
+    /**
+     * A tree the benchmark can run against, so both trees go through exactly the same steps.
+     */
+    private interface Target {
+        void insert(Integer key);
+        boolean search(Integer key);
+        Iterable<Integer> subRange(Integer lo, Integer hi);
+        Iterable<Integer> all();
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000_000, 10_000_000, 50_000_000};
+        if (args.length > 0){
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++){
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // a few unmeasured rounds on a small tree so the first row is not also paying for the JIT compiler
+        warmUp(200_000);
+
+        System.out.printf("%10s %-8s %10s %10s %10s %12s %10s %10s%n", "keys", "tree", "insert", "hit", "miss",
+                "range scan", "full scan", "heap/key");
+        for (int n : sizes){
+            Integer[] keys = keys(n);
+            SplittableRandom random = new SplittableRandom(n);
+            try {
+                System.out.println(measure(n, "b+ tree", new BPlusTarget(), keys, random));
+                System.out.println(measure(n, "avl", new AvlTarget(), keys, random));
+            } catch (OutOfMemoryError e) {
+                System.out.printf("%10d out of memory, run again with a larger -Xmx%n", n);
+            }
+        }
+    }
+
+    private static void warmUp(int n) {
+        Integer[] keys = keys(n);
+        SplittableRandom random = new SplittableRandom(n);
+        for (int round = 0; round < 3; round++){
+            measure(n, "b+ tree", new BPlusTarget(), keys, random);
+            measure(n, "avl", new AvlTarget(), keys, random);
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Makes the keys, the even numbers below 2n, so that every odd number is a miss
+     * @param n the number of keys
+     * @return the keys in ascending order
+     */
+    private static Integer[] keys(int n) {
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++){
+            keys[i] = 2 * i;
+        }
+        return keys;
+    }
+
+    /**
+     * Running Time --> O(n log n)
+     * Builds one tree from the keys and times each of the operations on it
+     * @param n the number of keys
+     * @param name the name of the tree in the results
+     * @param tree an empty tree
+     * @param keys the keys, which are shuffled in place
+     * @param random the source of the shuffles and of the keys searched for
+     * @return a row of the results
+     */
+    private static String measure(int n, String name, Target tree, Integer[] keys, SplittableRandom random) {
+        long heapBefore = usedHeap();
+
+        shuffle(keys, random);
+        long begin = System.nanoTime();
+        for (Integer key : keys){
+            tree.insert(key);
+        }
+        double insert = (System.nanoTime() - begin) / (double) n;
+        double heapPerKey = (usedHeap() - heapBefore) / (double) n;
+
+        shuffle(keys, random);
+        begin = System.nanoTime();
+        int found = 0;
+        for (Integer key : keys){
+            if (tree.search(key)){
+                found++;
+            }
+        }
+        double hit = (System.nanoTime() - begin) / (double) n;
+        check(found == n, name + " lost keys");
+
+        int misses = Math.min(n, 1_000_000);
+        Integer[] odd = new Integer[misses];
+        for (int i = 0; i < misses; i++){
+            odd[i] = 2 * random.nextInt(n) + 1;
+        }
+        begin = System.nanoTime();
+        for (Integer key : odd){
+            if (tree.search(key)){
+                found++;
+            }
+        }
+        double miss = (System.nanoTime() - begin) / (double) misses;
+        check(found == n, name + " found keys which were never inserted");
+
+        int ranges = Math.min(RANGES, n / RANGE_LENGTH);
+        Integer[] starts = new Integer[ranges];
+        for (int i = 0; i < ranges; i++){
+            starts[i] = 2 * random.nextInt(n - RANGE_LENGTH);
+        }
+        begin = System.nanoTime();
+        long scanned = 0;
+        for (Integer lo : starts){
+            for (Integer key : tree.subRange(lo, lo + 2 * (RANGE_LENGTH - 1))){
+                sink += key;
+                scanned++;
+            }
+        }
+        double range = (System.nanoTime() - begin) / (double) ranges;
+        check(scanned == (long) ranges * RANGE_LENGTH, name + " scanned the wrong number of keys");
+
+        begin = System.nanoTime();
+        scanned = 0;
+        for (Integer key : tree.all()){
+            sink += key;
+            scanned++;
+        }
+        double full = (System.nanoTime() - begin) / (double) n;
+        check(scanned == n, name + " iterated over the wrong number of keys");
+
+        return String.format("%10d %-8s %7.0f ns %7.0f ns %7.0f ns %9.0f ns %7.1f ns %8.1f B", n, name, insert, hit,
+                miss, range, full, heapPerKey);
+    }
+
+    /**
+     * Running Time --> O(heap)
+     * Gets the heap in use once the garbage collector has run. The keys themselves are already on the heap before a
+     * tree is built, so only the tree is counted.
+     * @return the number of bytes in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean ok, String message) {
+        if (!ok){
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static void shuffle(Integer[] keys, SplittableRandom random) {
+        for (int i = keys.length - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            Integer swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+    }
+
+    private static final class BPlusTarget implements Target {
+        private final BPlusTree<Integer> tree = new BPlusTree<Integer>();
+
+        public void insert(Integer key){
+            tree.insert(key);
+        }
+
+        public boolean search(Integer key){
+            return tree.search(key);
+        }
+
+        public Iterable<Integer> subRange(Integer lo, Integer hi){
+            return tree.subRange(lo, hi);
+        }
+
+        public Iterable<Integer> all(){
+            return tree;
+        }
+    }
+
+    private static final class AvlTarget implements Target {
+        // insert hands back the root, which rotations may have changed
+        private BinarySearchTree<Integer> root = new BinarySearchTree<Integer>();
+
+        public void insert(Integer key){
+            root = root.insert(key);
+        }
+
+        public boolean search(Integer key){
+            return root.search(key) != null;
+        }
+
+        public Iterable<Integer> subRange(Integer lo, Integer hi){
+            return root.subRange(lo, hi);
+        }
+
+        public Iterable<Integer> all(){
+            return root;
+        }
+    }
+
+}
@@ -1,5 +1,18 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author Samuel Bernheim
@@ -8,20 +21,99 @@ import java.util.Queue;
  * and rotates nodes as needed after every insertion.
  */
 
-public class BinarySearchTree<E extends Comparable<E>> {
+public class BinarySearchTree<E extends Comparable<E>> implements Iterable<E> {
+    // batches at least this large are merged into the tree by fork join tasks
+    private static final int PARALLEL_BATCH = 1 << 13;
+
     private E data;
     private BinarySearchTree<E> left;
     private BinarySearchTree<E> right;
     private BinarySearchTree<E> parent;
+    // height of the subtree rooted at this node, kept up to date on every structural change
+    private int height;
+    // number of nodes in the subtree rooted at this node, kept up to date alongside the height
+    private int size;
+    // the aggregate every node of the tree caches for its subtree, or null if the tree keeps none
+    private Aggregate<E, Object> aggregator;
+    // the aggregate of the data in the subtree rooted at this node
+    private Object aggregate;
 
     public BinarySearchTree(E data) {
         this.data = data;
+        this.size = 1;
     }
 
     public BinarySearchTree() {
 
     }
 
+    /**
+     * Creates an empty tree in which every node caches the aggregate of its subtree, so that aggregate queries over
+     * any range of the tree combine O(log n) cached values instead of visiting every node in the range.
+     * @param aggregator the aggregate the tree keeps
+     */
+    @SuppressWarnings("unchecked")
+    public BinarySearchTree(Aggregate<E, ?> aggregator) {
+        this.aggregator = (Aggregate<E, Object>) aggregator;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Builds a perfectly balanced tree straight from data sorted in strictly ascending order, without any of the
+     * comparisons and rotations that inserting the data one at a time would take.
+     * @param sorted the data of the tree in strictly ascending order
+     * @return the root of the new tree
+     */
+    public static <E extends Comparable<E>> BinarySearchTree<E> fromSorted(E[] sorted) {
+        return fromSorted(Arrays.asList(sorted));
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Builds a perfectly balanced tree straight from data sorted in strictly ascending order, without any of the
+     * comparisons and rotations that inserting the data one at a time would take. The list is only read through its
+     * iterator so a linked list is loaded in linear time as well.
+     * @param sorted the data of the tree in strictly ascending order
+     * @return the root of the new tree
+     */
+    public static <E extends Comparable<E>> BinarySearchTree<E> fromSorted(List<? extends E> sorted) {
+        return fromSorted(sorted.iterator(), sorted.size());
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Builds a perfectly balanced tree straight from data sorted in strictly ascending order, without any of the
+     * comparisons and rotations that inserting the data one at a time would take.
+     * @param sorted an iterator over the data of the tree in strictly ascending order
+     * @param size the number of elements to take from the iterator
+     * @return the root of the new tree
+     */
+    public static <E extends Comparable<E>> BinarySearchTree<E> fromSorted(Iterator<? extends E> sorted, int size) {
+        return fromSorted(sorted, size, null);
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Builds a perfectly balanced tree straight from data sorted in strictly ascending order, with every node caching
+     * the aggregate of its subtree.
+     * @param sorted an iterator over the data of the tree in strictly ascending order
+     * @param size the number of elements to take from the iterator
+     * @param aggregator the aggregate the tree keeps, or null for none
+     * @return the root of the new tree
+     */
+    public static <E extends Comparable<E>> BinarySearchTree<E> fromSorted(Iterator<? extends E> sorted, int size,
+                                                                           Aggregate<E, ?> aggregator) {
+        if (size < 0){
+            throw new IllegalArgumentException("A tree cannot have a negative size");
+        }
+
+        BinarySearchTree<E> root = new BinarySearchTree<E>(aggregator);
+        if (size > 0){
+            new SortedLoader<E>(sorted).fill(root, size);
+        }
+        return root;
+    }
+
     /**
      * Running Time --> O(1)
      * Determines if the node has a left node or not.
@@ -96,23 +188,35 @@ public class BinarySearchTree<E extends Comparable<E>> {
 
     /**
      * Running Time --> O(log n)
-     * Looks for the node which contains the data the user specifies
+     * Looks for the node which contains the data the user specifies.
+     * The node stays valid through later inserts and deletes of other elements, with two exceptions which both come
+     * from the root node staying the root for the life of the tree: a rotation at the root exchanges the elements of
+     * the root and of the child which rises, and deleting the element of the root moves the element of its successor,
+     * or of its predecessor when it has no right subtree, into the root and detaches that node. insertAll, deleteAll,
+     * split and join also move the tree through a copy of its root, so a node holding the root's element before them
+     * or the top element after them may be detached or hold another element.
      * @param e the data the user is searching for
      * @return the node containing the data is returned and if it does not exist in the tree then a null node is
      * returned.
      */
     public BinarySearchTree<E> findNode(E e) {
-        if (this.data.compareTo(e) == 0){
-            return this;
+        if (isEmpty()){
+            return null;
         }
 
-        if (this.data.compareTo(e) > 0 && hasLeft()){
-            return this.left.findNode(e);
-        } else if (this.data.compareTo(e) < 0 && hasRight()){
-            return this.right.findNode(e);
-        } else {
-            return null;
+        // walk down iteratively, comparing against each node on the path only once
+        BinarySearchTree<E> curr = this;
+        while (curr != null){
+            int cmp = curr.data.compareTo(e);
+            if (cmp > 0){
+                curr = curr.left;
+            } else if (cmp < 0){
+                curr = curr.right;
+            } else {
+                return curr;
+            }
         }
+        return null;
     }
 
     /**
@@ -132,27 +236,105 @@ public class BinarySearchTree<E extends Comparable<E>> {
         }
     }
 
+    /**
+     * Running Time O(log n)
+     * A path from the root of the tree to its farthest right is followed to obtain the maximum value.
+     * @return the node containing the maximum value is returned
+     */
+    public BinarySearchTree<E> findMax() {
+        BinarySearchTree<E> temp = this;
+        while (temp.hasRight()){
+            temp = temp.right;
+        }
+        return temp;
+    }
+
     /**
      * Running Time --> O(log n)
-     * Finds the successor of a node
-     * @return the successor of the node.
+     * Finds the successor of a node, which is the node holding the next larger data in the whole tree. When the node
+     * has no right subtree the parent pointers are followed up the tree.
+     * @return the successor of the node or null if the node holds the largest data in the tree
      */
     public BinarySearchTree<E> findSuccessor() {
+        return nextInOrder(this, null);
+    }
 
-        if (hasLeft() || hasRight()) {
-            if (this.hasRight()) {
-                return this.right.findMin();
-            } else {
-                BinarySearchTree<E> temp = this.left;
-                while (temp.hasRight()){
-                    temp = temp.right;
-                }
-                return temp;
-            }
-        } else {
-            throw new NullPointerException("No successor exists. There is only one element in the tree");
+    /**
+     * Running Time --> O(log n)
+     * Finds the predecessor of a node, which is the node holding the next smaller data in the whole tree. When the
+     * node has no left subtree the parent pointers are followed up the tree.
+     * @return the predecessor of the node or null if the node holds the smallest data in the tree
+     */
+    public BinarySearchTree<E> findPredecessor() {
+        if (hasLeft()){
+            return this.left.findMax();
+        }
+
+        // climb until we arrive at a parent from its right subtree
+        BinarySearchTree<E> node = this;
+        while (node.isLeftChild()){
+            node = node.parent;
         }
+        return node.parent;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node holding the largest data which is smaller than or equal to e
+     * @param e the data to search around
+     * @return the node holding the floor of e or null if every element is larger than e
+     */
+    public BinarySearchTree<E> floor(E e) {
+        return below(e, true);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node holding the smallest data which is larger than or equal to e
+     * @param e the data to search around
+     * @return the node holding the ceiling of e or null if every element is smaller than e
+     */
+    public BinarySearchTree<E> ceiling(E e) {
+        return above(e, true);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node holding the smallest data which is strictly larger than e
+     * @param e the data to search around
+     * @return the node holding the next larger data or null if no element is larger than e
+     */
+    public BinarySearchTree<E> higher(E e) {
+        return above(e, false);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node holding the largest data which is strictly smaller than e
+     * @param e the data to search around
+     * @return the node holding the next smaller data or null if no element is smaller than e
+     */
+    public BinarySearchTree<E> lower(E e) {
+        return below(e, false);
+    }
 
+    /**
+     * Running Time --> O(log n + k) where k is the number of elements in the range
+     * Gives a view of the data between lo and hi, both ends included, in ascending order. The view is lazy: the
+     * bounds are only looked up when iteration starts and the data is streamed from the tree without being copied.
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return an iterable over the data e with lo <= e <= hi
+     */
+    public Iterable<E> subRange(E lo, E hi) {
+        return () -> {
+            BinarySearchTree<E> first = ceiling(lo);
+            BinarySearchTree<E> last = floor(hi);
+            if (first == null || last == null || first.data.compareTo(last.data) > 0){
+                return new InOrderIterator(null, null);
+            }
+            return new InOrderIterator(first, last);
+        };
     }
 
     /**
@@ -164,6 +346,7 @@ public class BinarySearchTree<E extends Comparable<E>> {
     public BinarySearchTree<E> addRoot(E e) {
         if(isEmpty() && isRoot()){
             this.data = e;
+            update();
         } else {
             throw new NullPointerException("A root already exists");
         }
@@ -177,49 +360,38 @@ public class BinarySearchTree<E extends Comparable<E>> {
      * @return the root of the tree
      */
     public BinarySearchTree<E> insert(E e) {
+        BinarySearchTree<E> root = getRoot();
 
         // make sure the node the user wants to insert is not already in the tree
-        if (findNode(e) != null){
+        if (!root.insertNode(e)){
             throw new IllegalStateException("Node is already in the tree");
         }
 
-        BinarySearchTree<E> nodeToInsert = new BinarySearchTree<E>(e);
-        BinarySearchTree<E> parent = null;
-        BinarySearchTree<E> w = getRoot();
-
-        // move down to find the parent of the new node
-        while (w != null){
-            parent = w;
-            if (nodeToInsert.data.compareTo(w.data) < 0){
-                w = w.left;
-            } else {
-                w = w.right;
-            }
-        }
-
-
-        nodeToInsert.parent = parent;
-
-        // insert the new node into the left or right subtree based on its value
-        if (parent != null){
-            if (nodeToInsert.data.compareTo(parent.data) < 0){
-                parent.left = nodeToInsert;
-            } else {
-                parent.right = nodeToInsert;
-            }
-        }
+        return root;
+    }
 
-        // find where the balance factor is not 0, 1 or -1
-        BinarySearchTree<E> curr = nodeToInsert;
-        while (curr != null && Math.abs(curr.balanceFactor()) < 2) {
-            curr = curr.parent;
-        }
-        // balance that node whose balance factor is not 0, 1 or -1
-        if (curr != null){
-            curr.balance();
-        }
+    /**
+     * Running Time --> O(log n)
+     * Inserts a new node into the tree unless a node with the same data is already in it. Unlike insert, finding
+     * an equal element is not an error.
+     * @param e the data which will be inserted into the tree
+     * @return true if e was inserted or false if it was already in the tree
+     */
+    public boolean putIfAbsent(E e) {
+        return getRoot().insertNode(e);
+    }
 
-        return getRoot();
+    /**
+     * Running Time --> O(m log(n/m + 1)) for a batch of m elements
+     * Inserts a whole batch of data into the tree at once. The batch is sorted and then merged into the tree by
+     * splitting the tree around the middle of the batch and joining the pieces back together, so each part of the
+     * tree is rebalanced once for the whole batch instead of once per element. Large batches are merged in parallel.
+     * Data which is already in the tree is skipped.
+     * @param batch the data which will be inserted into the tree
+     * @return the root of the tree
+     */
+    public BinarySearchTree<E> insertAll(Collection<? extends E> batch) {
+        return getRoot().merge(sortedBatch(batch), false);
     }
 
     /**
@@ -241,130 +413,306 @@ public class BinarySearchTree<E extends Comparable<E>> {
     public BinarySearchTree<E> delete(E e) {
         BinarySearchTree<E> nodeToDelete = findNode(e);
 
-        // No Children
-        if (!nodeToDelete.hasLeft() && !nodeToDelete.hasRight()){
-            if (nodeToDelete.isLeftChild()){
-                nodeToDelete.parent.left = null;
+        if (nodeToDelete == null){
+            throw new IllegalStateException("Node is not in the tree");
+        }
 
-                // set the nodeToDelete field's all to null to completely remove it from the tree
-                deleteNodeData(nodeToDelete);
+        // The root node stays the root for the life of the tree, so when its data is deleted the data of its
+        // successor, or of its predecessor if it has no right subtree, moves into it and that node is removed instead
+        if (nodeToDelete.isRoot()){
+            BinarySearchTree<E> replacement;
+            if (nodeToDelete.hasRight()){
+                replacement = nodeToDelete.right.findMin();
+            } else if (nodeToDelete.hasLeft()){
+                replacement = nodeToDelete.left.findMax();
             } else {
-                nodeToDelete.parent.right = null;
-
-                // set the nodeToDelete field's all to null to completely remove it from the tree
-                deleteNodeData(nodeToDelete);
+                // the last element was deleted, leaving an empty tree behind
+                nodeToDelete.data = null;
+                nodeToDelete.size = 0;
+                nodeToDelete.aggregate = null;
+                return nodeToDelete;
             }
+            nodeToDelete.data = replacement.data;
+            nodeToDelete = replacement;
+        }
 
-            // Two Children
-        } else if (nodeToDelete.hasLeft() && nodeToDelete.hasRight()) {
-            BinarySearchTree<E> successor = nodeToDelete.findSuccessor();
-
-            // based on if the successor is a right or left child, its parent's left or right field is set to null to
-            // help detach the node
-            if (successor.isRightChild()){
-                successor.parent.right = null;
+        BinarySearchTree<E> parent = nodeToDelete.parent;
+        // the lowest node whose subtree changed, where rebalancing starts
+        BinarySearchTree<E> lowest;
+
+        if (nodeToDelete.hasLeft() && nodeToDelete.hasRight()){
+            // Two Children: the successor, which has no left child, is unlinked from its place and relinked into the
+            // place of the deleted node, so every node keeps its own data
+            BinarySearchTree<E> successor = nodeToDelete.right.findMin();
+            if (successor.parent == nodeToDelete){
+                lowest = successor;
+                successor.link(nodeToDelete.left, successor.right);
             } else {
-                successor.parent.left = null;
+                lowest = successor.parent;
+                lowest.left = successor.right;
+                if (successor.right != null){
+                    successor.right.parent = lowest;
+                }
+                successor.link(nodeToDelete.left, nodeToDelete.right);
             }
+            replaceChild(parent, nodeToDelete, successor);
+        } else {
+            // No Children or One Child: the only child (if any) moves up into the place of the deleted node
+            BinarySearchTree<E> child = nodeToDelete.hasLeft() ? nodeToDelete.left : nodeToDelete.right;
+            replaceChild(parent, nodeToDelete, child);
+            lowest = parent;
+        }
 
-            //sets the successor's fields (left, right, parent) to be the fields of the node which will be deleted
-            successor.parent = nodeToDelete.parent;
-            successor.left = nodeToDelete.left;
-            successor.right = nodeToDelete.right;
+        // set the nodeToDelete field's all to null to completely remove it from the tree
+        deleteNodeData(nodeToDelete);
 
-            if (nodeToDelete.isLeftChild()){
-                successor.parent.left = successor;
-            } else {
-                successor.parent.right = successor;
-            }
+        // unlike insertion a deletion can require a rotation at every level so the whole path is rebalanced
+        return rebalance(lowest);
+    }
+
+    /**
+     * Running Time --> O(m log(n/m + 1)) for a batch of m elements
+     * Deletes a whole batch of data from the tree at once. The batch is sorted and the tree is split around the middle
+     * of the batch, with the pieces joined back together without the deleted data, so each part of the tree is
+     * rebalanced once for the whole batch instead of once per element. Large batches are handled in parallel. Data
+     * which is not in the tree is skipped.
+     * @param batch the data which will be deleted from the tree
+     * @return the root of the tree
+     */
+    public BinarySearchTree<E> deleteAll(Collection<? extends E> batch) {
+        return getRoot().merge(sortedBatch(batch), true);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Splits the tree in two: every element larger than or equal to e is taken out of this tree and moved into a new
+     * tree. No node is copied, the tree is cut along the path to e and both pieces are rebalanced on the way.
+     * @param e the data to split around
+     * @return the root of the new tree holding the data larger than or equal to e
+     */
+    public BinarySearchTree<E> split(E e) {
+        BinarySearchTree<E> root = getRoot();
+        BinarySearchTree<E> upper = root.newNode();
+        if (root.isEmpty()){
+            return upper;
+        }
 
-            // makes all the fields of the node which will be deleted null;
-            deleteNodeData(nodeToDelete);
+        Split<E> split = splitTree(root.detach(), e);
+        BinarySearchTree<E> right = split.node != null ? joinTrees(null, split.node, split.right) : split.right;
+        root.attach(split.left);
+        upper.attach(right);
+        return upper;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Joins another tree into this one. All the data of the other tree has to be either smaller than or larger than
+     * all the data of this tree. Afterwards the other tree is empty.
+     * @param other the tree whose data is moved into this tree
+     * @return the root of the tree
+     */
+    public BinarySearchTree<E> join(BinarySearchTree<E> other) {
+        BinarySearchTree<E> root = getRoot();
+        BinarySearchTree<E> otherRoot = other.getRoot();
+        if (root == otherRoot || otherRoot.isEmpty()){
+            return root;
+        } else if (root.aggregator != otherRoot.aggregator){
+            throw new IllegalArgumentException("The two trees keep different aggregates");
+        } else if (root.isEmpty()){
+            root.attach(otherRoot.detach());
+            otherRoot.attach(null);
+            return root;
+        }
 
-            // One Child
+        BinarySearchTree<E> joined;
+        if (root.findMax().data.compareTo(otherRoot.findMin().data) < 0){
+            joined = joinTrees(root.detach(), otherRoot.detach());
+        } else if (otherRoot.findMax().data.compareTo(root.findMin().data) < 0){
+            joined = joinTrees(otherRoot.detach(), root.detach());
         } else {
-            BinarySearchTree<E> successor = nodeToDelete.findSuccessor();
+            throw new IllegalArgumentException("The data of the two trees overlaps");
+        }
 
-            // set the successor's parent left or right's field to null based on if successor is the left or right
-            // node of its parent
-            if (successor.isRightChild()){
-                successor.parent.right = null;
-            } else {
-                successor.parent.left = null;
-            }
+        root.attach(joined);
+        otherRoot.attach(null);
+        return root;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the number of nodes a tree has
+     * @return an integer representing the number of nodes in the tree
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Gives the rank of an element, which is the number of elements in the tree smaller than it. The element itself
+     * does not need to be in the tree.
+     * @param e the element whose rank is wanted
+     * @return an integer representing the number of elements in the tree which are smaller than e
+     */
+    public int rank(E e) {
+        return countBelow(e, false);
+    }
 
-            successor.parent = nodeToDelete.parent;
+    /**
+     * Running Time --> O(log n)
+     * Finds the node holding the k-th smallest element of the tree, counting from 0. The node stays valid through
+     * later changes to the tree in the same cases as a node from findNode.
+     * @param k the rank of the element the user is looking for
+     * @return the node containing the k-th smallest element
+     */
+    public BinarySearchTree<E> select(int k) {
+        if (k < 0 || k >= this.size){
+            throw new IndexOutOfBoundsException("No element has rank " + k + " in a tree of size " + this.size);
+        }
 
-            //make the nodeToDelete parent's left or right point to the successor
-            if (nodeToDelete.isRightChild()){
-                nodeToDelete.parent.right = successor;
+        BinarySearchTree<E> curr = this;
+        while (true){
+            int leftSize = size(curr.left);
+            if (k < leftSize){
+                curr = curr.left;
+            } else if (k > leftSize){
+                k -= leftSize + 1;
+                curr = curr.right;
             } else {
-                nodeToDelete.parent.left = successor;
+                return curr;
             }
+        }
+    }
 
-            // set the successor's left and right nodes to point to the nodeToDelete's left and right node
-            successor.right = nodeToDelete.right;
-            successor.left = nodeToDelete.left;
-
-            // set the nodeToDelete field's all to null to completely remove it from the tree
-            deleteNodeData(nodeToDelete);
+    /**
+     * Running Time --> O(log n)
+     * Counts the elements of the tree which lie between lo and hi, both ends included
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return an integer representing the number of elements e with lo <= e <= hi
+     */
+    public int countInRange(E lo, E hi) {
+        if (lo.compareTo(hi) > 0){
+            return 0;
         }
-        return getRoot();
+        return countBelow(hi, true) - countBelow(lo, false);
+    }
 
+    /**
+     * Running Time --> O(1)
+     * Gives the aggregate of all the data in the tree, which every node caches for its subtree. The aggregate has to
+     * be the very one the tree was created with, which is what gives the result its type.
+     * @param aggregator the aggregate the tree keeps
+     * @return the aggregate of the tree, or the identity of the aggregate if the tree is empty
+     */
+    @SuppressWarnings("unchecked")
+    public <A> A aggregate(Aggregate<E, A> aggregator) {
+        checkAggregator(aggregator);
+        return (A) (isEmpty() ? this.aggregator.identity() : this.aggregate);
     }
 
     /**
      * Running Time --> O(log n)
-     * Gives the number of nodes a tree has
-     * @return an integer representing the number of nodes in the tree
+     * Gives the aggregate of the data between lo and hi, both ends included, in ascending order. Below the node where
+     * the paths to lo and hi part, each path adds the cached aggregates of the subtrees hanging off its inner side,
+     * so only O(log n) values are combined. The aggregate has to be the very one the tree was created with, which is
+     * what gives the result its type.
+     * @param aggregator the aggregate the tree keeps
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return the aggregate of the data e with lo <= e <= hi
      */
-    public int size() {
-        if (isEmpty()){
-            return 0;
-        } else if (hasLeft() && hasRight()){
-            return 1 + this.left.size() + this.right.size();
-        } else if(hasLeft() && !hasRight()){
-            return 1 + this.left.size();
-        } else if(!hasLeft() && hasRight()){
-            return  1+this.right.size();
-        } else {
-            return 1;
+    @SuppressWarnings("unchecked")
+    public <A> A aggregate(Aggregate<E, A> aggregator, E lo, E hi) {
+        checkAggregator(aggregator);
+        return (A) rangeAggregate(lo, hi);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Makes sure an aggregate asked for is the one the tree keeps, so the cached values really have its type
+     * @param aggregator the aggregate asked for
+     */
+    private void checkAggregator(Aggregate<E, ?> aggregator) {
+        if (this.aggregator == null){
+            throw new IllegalStateException("The tree does not keep an aggregate");
+        } else if (aggregator != this.aggregator){
+            throw new IllegalArgumentException("The tree keeps a different aggregate");
         }
     }
 
     /**
      * Running Time --> O(log n)
+     * Combines the aggregate of the data between lo and hi for aggregate(aggregator, lo, hi)
+     * @param lo the lower bound of the range
+     * @param hi the upper bound of the range
+     * @return the aggregate of the data e with lo <= e <= hi
+     */
+    private Object rangeAggregate(E lo, E hi) {
+        // find the highest node inside the range, where the paths to lo and hi part
+        BinarySearchTree<E> top = isEmpty() ? null : this;
+        while (top != null){
+            if (top.data.compareTo(lo) < 0){
+                top = top.right;
+            } else if (top.data.compareTo(hi) > 0){
+                top = top.left;
+            } else {
+                break;
+            }
+        }
+        if (top == null){
+            return aggregator.identity();
+        }
+
+        // the part of the left subtree at or above lo, built from the right end towards lo
+        Object lower = aggregator.identity();
+        for (BinarySearchTree<E> curr = top.left; curr != null; ){
+            if (curr.data.compareTo(lo) >= 0){
+                Object suffix = aggregator.lift(curr.data);
+                if (curr.right != null){
+                    suffix = aggregator.combine(suffix, curr.right.aggregate);
+                }
+                lower = aggregator.combine(suffix, lower);
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+
+        // the part of the right subtree at or below hi, built from the left end towards hi
+        Object upper = aggregator.identity();
+        for (BinarySearchTree<E> curr = top.right; curr != null; ){
+            if (curr.data.compareTo(hi) <= 0){
+                Object prefix = aggregator.lift(curr.data);
+                if (curr.left != null){
+                    prefix = aggregator.combine(curr.left.aggregate, prefix);
+                }
+                upper = aggregator.combine(upper, prefix);
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+
+        return aggregator.combine(aggregator.combine(lower, aggregator.lift(top.data)), upper);
+    }
+
+    /**
+     * Running Time --> O(1)
      * Gets the balance factor of a node in the tree
      * @return an integer representing the balance factor of the node
      */
     public int balanceFactor() {
-
-        if (this.hasLeft() && this.hasRight()){
-            return this.left.height() - this.right.height();
-        } else if (this.hasLeft() && !this.hasRight()){
-            return this.left.height() + 1;
-        } else if (!this.hasLeft() && this.hasRight()){
-            return -1 - this.right.height();
-        } else {
-            return 0;
-        }
+        return height(this.left) - height(this.right);
     }
 
     /**
-     * Running Time --> O(log n)
+     * Running Time --> O(1)
      * Gets the height of the tree
      * @return an integer representing the height of the tree
      */
     public int height(){
-        if (this.hasLeft() && this.hasRight()) {
-            return 1 + Math.max(this.left.height(), this.right.height());
-        } else if (this.hasLeft() && !this.hasRight()){
-            return 1 + this.left.height();
-        } else if (!this.hasLeft() && this.hasRight()){
-            return 1 + this.right.height();
-        } else {
-            return 0;
-        }
+        return this.height;
     }
 
 
@@ -406,13 +754,37 @@ public class BinarySearchTree<E extends Comparable<E>> {
 
     /**
      * Running Time --> O(1)
-     * Performs a right rotation on a tree
+     * Performs a right rotation on a tree. When the node is the root of the tree it stays at the top, taking over
+     * the data of its left child, so a reference to the root of a tree remains valid through every rotation.
      */
     public void rightRotation() {
         BinarySearchTree<E> u = this.parent;
         BinarySearchTree<E> w = this.left;
         BinarySearchTree<E> x = w.right;
 
+        if (u == null) {
+            BinarySearchTree<E> a = w.left;
+            BinarySearchTree<E> c = this.right;
+
+            // w keeps the data of this node and moves down to the right, between x and this node's right subtree
+            swapData(w);
+            w.left = x;
+            w.right = c;
+            if (c != null) {
+                c.parent = w;
+            }
+
+            this.left = a;
+            if (a != null) {
+                a.parent = this;
+            }
+            this.right = w;
+
+            w.update();
+            this.update();
+            return;
+        }
+
         w.right = this;
         this.parent = w;
         this.left = x;
@@ -422,27 +794,53 @@ public class BinarySearchTree<E extends Comparable<E>> {
         }
 
 
-        if (u != null) {
-            if (u.left == this) {
-                u.left = w;
-            } else {
-                u.right = w;
-            }
+        if (u.left == this) {
+            u.left = w;
+        } else {
+            u.right = w;
         }
 
         w.parent = u;
+
+        // this is now below w so its height has to be fixed first
+        this.update();
+        w.update();
     }
 
 
     /**
      * Running Time --> O(1)
-     * Performs a left rotation on a tree
+     * Performs a left rotation on a tree. When the node is the root of the tree it stays at the top, taking over
+     * the data of its right child, so a reference to the root of a tree remains valid through every rotation.
      */
     public void leftRotation() {
         BinarySearchTree<E> u = this.parent;
         BinarySearchTree<E> v = this.right;
         BinarySearchTree<E> x = v.left;
 
+        if (u == null) {
+            BinarySearchTree<E> a = this.left;
+            BinarySearchTree<E> c = v.right;
+
+            // v keeps the data of this node and moves down to the left, between this node's left subtree and x
+            swapData(v);
+            v.left = a;
+            if (a != null) {
+                a.parent = v;
+            }
+            v.right = x;
+
+            this.right = c;
+            if (c != null) {
+                c.parent = this;
+            }
+            this.left = v;
+
+            v.update();
+            this.update();
+            return;
+        }
+
         this.right = x;
         if (x!=null) {
             x.parent = this;
@@ -451,15 +849,17 @@ public class BinarySearchTree<E extends Comparable<E>> {
         v.left = this;
         this.parent = v;
 
-        if (u != null){
-            if (u.right == this){
-                u.right = v;
-            } else {
-                u.left = v;
-            }
+        if (u.right == this){
+            u.right = v;
+        } else {
+            u.left = v;
         }
 
         v.parent = u;
+
+        // this is now below v so its height has to be fixed first
+        this.update();
+        v.update();
     }
 
 
@@ -469,17 +869,68 @@ public class BinarySearchTree<E extends Comparable<E>> {
      * @return a string representation of the data contained in each node in a postorder notation
      */
     public String postorder() {
+        StringBuilder result = new StringBuilder();
+        if (isEmpty()){
+            return result.toString();
+        }
+
+        // the parent pointers tell us where we came from, so the traversal needs neither recursion nor a stack
+        BinarySearchTree<E> curr = firstPostorder(this);
+        while (true){
+            result.append(curr.data);
+            if (curr == this){
+                return result.toString();
+            }
 
-        String left = "";
-        String right = "";
-        if (this.hasLeft()){
-            left = this.left.postorder();
+            BinarySearchTree<E> parent = curr.parent;
+            if (curr.isLeftChild() && parent.hasRight()){
+                curr = firstPostorder(parent.right);
+            } else {
+                curr = parent;
+            }
         }
+    }
 
-        if (this.hasRight()){
-            right = this.right.postorder();
+    /**
+     * Running Time --> O(1)
+     * Returns an iterator over the data in this tree in ascending order. The iterator follows the parent pointers
+     * of the tree, so it needs no stack and creates no objects while iterating.
+     * @return an in order iterator over the tree
+     */
+    public Iterator<E> iterator() {
+        if (isEmpty()){
+            return new InOrderIterator(null, null);
         }
-        return left + right + data.toString();
+        return new InOrderIterator(findMin(), findMax());
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Returns a spliterator over the data in this tree in ascending order. It splits by rank using the cached subtree
+     * sizes, so every split is exact and takes O(log n), which lets parallel streams divide the tree evenly.
+     * @return an in order spliterator over the tree
+     */
+    public Spliterator<E> spliterator() {
+        return new InOrderSpliterator(isEmpty() ? null : findMin(), 0, size());
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Returns a sequential stream over the data in this tree in ascending order
+     * @return a stream over the tree
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Returns a parallel stream over the data in this tree in ascending order, which fork join reductions can split
+     * across threads by rank
+     * @return a parallel stream over the tree
+     */
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
     }
 
     public void levelOrder(){
@@ -548,6 +999,493 @@ public class BinarySearchTree<E extends Comparable<E>> {
         node.data = null;
     }
 
+    /**
+     * Running Time --> O(1)
+     * Recomputes the cached height, size and aggregate of the node from the cached values of its children
+     */
+    private void update(){
+        this.height = 1 + Math.max(height(this.left), height(this.right));
+        this.size = 1 + size(this.left) + size(this.right);
+
+        if (aggregator != null){
+            Object value = aggregator.lift(this.data);
+            if (this.left != null){
+                value = aggregator.combine(this.left.aggregate, value);
+            }
+            if (this.right != null){
+                value = aggregator.combine(value, this.right.aggregate);
+            }
+            this.aggregate = value;
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Creates a new empty node which keeps the same aggregate as this tree
+     * @return the new node
+     */
+    private BinarySearchTree<E> newNode(){
+        BinarySearchTree<E> node = new BinarySearchTree<E>();
+        node.aggregator = this.aggregator;
+        return node;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Walks from the given node up to the root, fixing the cached heights along the way and balancing every node
+     * whose balance factor is not 0, 1 or -1
+     * @param node the lowest node whose subtree changed
+     * @return the root of the tree
+     */
+    private BinarySearchTree<E> rebalance(BinarySearchTree<E> node){
+        BinarySearchTree<E> curr = node;
+        while (true){
+            curr.update();
+            if (Math.abs(curr.balanceFactor()) > 1){
+                curr.balance();
+
+                // below the root curr moves down and the top of its old subtree is its parent
+                if (curr.hasParent()){
+                    curr = curr.parent;
+                }
+            }
+
+            if (!curr.hasParent()){
+                return curr;
+            }
+            curr = curr.parent;
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Inserts e below this node, which is the root of the tree, using a single descent that compares e to each node
+     * on the way down only once
+     * @param e the data which will be inserted into the tree
+     * @return true if e was inserted or false if it was already in the tree
+     */
+    private boolean insertNode(E e){
+        if (isEmpty()){
+            this.data = e;
+            update();
+            return true;
+        }
+
+        // move down to find the parent of the new node, stopping early if e is found on the way
+        BinarySearchTree<E> parent = this;
+        int cmp;
+        while (true){
+            cmp = e.compareTo(parent.data);
+            if (cmp == 0){
+                return false;
+            }
+
+            BinarySearchTree<E> next = cmp < 0 ? parent.left : parent.right;
+            if (next == null){
+                break;
+            }
+            parent = next;
+        }
+
+        BinarySearchTree<E> nodeToInsert = newNode();
+        nodeToInsert.data = e;
+        nodeToInsert.update();
+        nodeToInsert.parent = parent;
+
+        // insert the new node into the left or right subtree based on its value
+        if (cmp < 0){
+            parent.left = nodeToInsert;
+        } else {
+            parent.right = nodeToInsert;
+        }
+
+        // walk back up to the root fixing the cached heights and rotating wherever the tree became unbalanced
+        rebalance(parent);
+        return true;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Puts a node, or nothing, in the place of one of a parent's children
+     * @param parent the parent whose child is replaced
+     * @param child the child which is replaced
+     * @param replacement the node which takes its place, or null
+     */
+    private static <E extends Comparable<E>> void replaceChild(BinarySearchTree<E> parent, BinarySearchTree<E> child,
+                                                               BinarySearchTree<E> replacement){
+        if (parent.left == child){
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+        if (replacement != null){
+            replacement.parent = parent;
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Exchanges the data held by this node and another node
+     * @param other the node whose data is swapped with this node's data
+     */
+    private void swapData(BinarySearchTree<E> other){
+        E temp = this.data;
+        this.data = other.data;
+        other.data = temp;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the height of a possibly missing subtree, an empty subtree has a height of -1
+     * @param node the root of the subtree
+     * @return an integer representing the height of the subtree
+     */
+    private static int height(BinarySearchTree<?> node){
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the size of a possibly missing subtree, an empty subtree has a size of 0
+     * @param node the root of the subtree
+     * @return an integer representing the number of nodes in the subtree
+     */
+    private static int size(BinarySearchTree<?> node){
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Counts the elements of the tree which are smaller than e, or smaller than or equal to e
+     * @param e the bound to count up to
+     * @param inclusive whether an element equal to e is counted as well
+     * @return an integer representing the number of elements below the bound
+     */
+    private int countBelow(E e, boolean inclusive){
+        if (isEmpty()){
+            return 0;
+        }
+
+        int count = 0;
+        BinarySearchTree<E> curr = this;
+        while (curr != null){
+            int cmp = curr.data.compareTo(e);
+            if (cmp < 0 || (cmp == 0 && inclusive)){
+                // curr and everything to its left is below the bound
+                count += size(curr.left) + 1;
+                curr = curr.right;
+            } else if (cmp == 0){
+                return count + size(curr.left);
+            } else {
+                curr = curr.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node which comes after the given node in an in order traversal of the subtree rooted at top
+     * @param node the node whose successor is wanted
+     * @param top the root of the subtree the traversal is restricted to
+     * @return the next node of the subtree or null if node is its last node
+     */
+    private static <E extends Comparable<E>> BinarySearchTree<E> nextInOrder(BinarySearchTree<E> node,
+                                                                             BinarySearchTree<E> top){
+        if (node.hasRight()){
+            return node.right.findMin();
+        }
+
+        // climb until we arrive at a parent from its left subtree
+        while (node != top && node.isRightChild()){
+            node = node.parent;
+        }
+        return node == top ? null : node.parent;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node holding the largest data which is smaller than e, or smaller than or equal to e
+     * @param e the bound to search below
+     * @param inclusive whether a node holding e itself is an answer
+     * @return the node found or null if there is none
+     */
+    private BinarySearchTree<E> below(E e, boolean inclusive){
+        if (isEmpty()){
+            return null;
+        }
+
+        BinarySearchTree<E> best = null;
+        BinarySearchTree<E> curr = this;
+        while (curr != null){
+            int cmp = curr.data.compareTo(e);
+            if (cmp == 0 && inclusive){
+                return curr;
+            } else if (cmp < 0){
+                // curr is a candidate but there may be a larger one in its right subtree
+                best = curr;
+                curr = curr.right;
+            } else {
+                curr = curr.left;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node holding the smallest data which is larger than e, or larger than or equal to e
+     * @param e the bound to search above
+     * @param inclusive whether a node holding e itself is an answer
+     * @return the node found or null if there is none
+     */
+    private BinarySearchTree<E> above(E e, boolean inclusive){
+        if (isEmpty()){
+            return null;
+        }
+
+        BinarySearchTree<E> best = null;
+        BinarySearchTree<E> curr = this;
+        while (curr != null){
+            int cmp = curr.data.compareTo(e);
+            if (cmp == 0 && inclusive){
+                return curr;
+            } else if (cmp > 0){
+                // curr is a candidate but there may be a smaller one in its left subtree
+                best = curr;
+                curr = curr.left;
+            } else {
+                curr = curr.right;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the node which comes first in a post order traversal of the subtree rooted at node
+     * @param node the root of the subtree
+     * @return the deepest node on the left most path of the subtree
+     */
+    private static <E extends Comparable<E>> BinarySearchTree<E> firstPostorder(BinarySearchTree<E> node){
+        while (node.hasLeft() || node.hasRight()){
+            node = node.hasLeft() ? node.left : node.right;
+        }
+        return node;
+    }
+
+    /**
+     * Running Time --> O(m log m)
+     * Sorts a batch of data and drops the duplicates in it
+     * @param batch the data to sort
+     * @return the distinct data of the batch in ascending order
+     */
+    private static <E extends Comparable<E>> List<E> sortedBatch(Collection<? extends E> batch){
+        List<E> sorted = new ArrayList<E>(batch);
+        sorted.sort(null);
+
+        int distinct = 0;
+        for (int i = 0; i < sorted.size(); i++){
+            if (distinct == 0 || sorted.get(distinct - 1).compareTo(sorted.get(i)) != 0){
+                sorted.set(distinct++, sorted.get(i));
+            }
+        }
+        return sorted.subList(0, distinct);
+    }
+
+    /**
+     * Running Time --> O(m log(n/m + 1))
+     * Merges a sorted batch into or out of the tree rooted at this node. The tree is first detached from this node so
+     * that the algorithms can freely take it apart, and the result is attached again at the end so that this node
+     * stays the root.
+     * @param batch the distinct data of the batch in ascending order
+     * @param difference true to delete the batch from the tree or false to insert it
+     * @return the root of the tree
+     */
+    private BinarySearchTree<E> merge(List<E> batch, boolean difference){
+        if (batch.isEmpty()){
+            return this;
+        }
+
+        BinarySearchTree<E> tree = isEmpty() ? null : detach();
+        BatchTask<E> task = new BatchTask<E>(this, tree, batch, 0, batch.size(), difference);
+        attach(batch.size() >= PARALLEL_BATCH ? ForkJoinPool.commonPool().invoke(task) : task.compute());
+        return this;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Moves the tree rooted at this node into a new detached top node, leaving this node empty. The split and join
+     * algorithms take trees apart and put them together from new nodes, so they are run on the detached tree while
+     * the root itself stays out of the way.
+     * @return the top of the detached tree
+     */
+    private BinarySearchTree<E> detach(){
+        BinarySearchTree<E> top = newNode();
+        top.data = this.data;
+        top.link(this.left, this.right);
+
+        this.data = null;
+        this.left = null;
+        this.right = null;
+        this.height = 0;
+        this.size = 0;
+        this.aggregate = null;
+        return top;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Moves a detached tree into this empty root node, which takes the place of its top node
+     * @param top the top of the detached tree, or null to leave the tree empty
+     */
+    private void attach(BinarySearchTree<E> top){
+        if (top == null){
+            return;
+        }
+
+        this.data = top.data;
+        link(top.left, top.right);
+        deleteNodeData(top);
+    }
+
+    /**
+     * Running Time --> O(|h(left) - h(right)| + 1)
+     * Joins two detached trees and a single node whose data lies between them into one AVL tree. When the heights of
+     * the trees differ by more than one, the node is hung off the spine of the taller tree at the height of the
+     * shorter one and the path above it is rebalanced.
+     * @param left the tree of smaller data, or null
+     * @param node the detached node holding the middle data
+     * @param right the tree of larger data, or null
+     * @return the top of the joined tree
+     */
+    private static <E extends Comparable<E>> BinarySearchTree<E> joinTrees(BinarySearchTree<E> left,
+                                                                           BinarySearchTree<E> node,
+                                                                           BinarySearchTree<E> right){
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+
+        if (leftHeight > rightHeight + 1){
+            // walk down the right spine of left to a subtree about as tall as right
+            BinarySearchTree<E> p = null;
+            BinarySearchTree<E> c = left;
+            while (height(c) > rightHeight + 1){
+                p = c;
+                c = c.right;
+            }
+            node.link(c, right);
+            node.parent = p;
+            p.right = node;
+            return node.rebalance(p);
+        } else if (rightHeight > leftHeight + 1){
+            // walk down the left spine of right to a subtree about as tall as left
+            BinarySearchTree<E> p = null;
+            BinarySearchTree<E> c = right;
+            while (height(c) > leftHeight + 1){
+                p = c;
+                c = c.left;
+            }
+            node.link(left, c);
+            node.parent = p;
+            p.left = node;
+            return node.rebalance(p);
+        }
+
+        node.link(left, right);
+        node.parent = null;
+        return node;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Joins two detached trees, where all the data of the first is smaller than all the data of the second, by
+     * taking the smallest node out of the second tree and using it as the middle node of a join
+     * @param left the tree of smaller data, or null
+     * @param right the tree of larger data, or null
+     * @return the top of the joined tree
+     */
+    private static <E extends Comparable<E>> BinarySearchTree<E> joinTrees(BinarySearchTree<E> left,
+                                                                           BinarySearchTree<E> right){
+        if (left == null){
+            return right;
+        } else if (right == null){
+            return left;
+        }
+
+        BinarySearchTree<E> min = right.findMin();
+        BinarySearchTree<E> parent = min.parent;
+        BinarySearchTree<E> rest = min.right;
+        if (rest != null){
+            rest.parent = parent;
+        }
+
+        if (parent == null){
+            right = rest;
+        } else {
+            parent.left = rest;
+            right = min.rebalance(parent);
+        }
+
+        min.parent = null;
+        min.right = null;
+        min.update();
+        return joinTrees(left, min, right);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Splits a detached tree into the tree of data smaller than e, the node holding e if there is one, and the tree
+     * of data larger than e
+     * @param tree the tree to split, or null
+     * @param e the data to split around
+     * @return the three pieces of the tree
+     */
+    private static <E extends Comparable<E>> Split<E> splitTree(BinarySearchTree<E> tree, E e){
+        if (tree == null){
+            return new Split<E>(null, null, null);
+        }
+
+        BinarySearchTree<E> left = tree.left;
+        BinarySearchTree<E> right = tree.right;
+        tree.link(null, null);
+        if (left != null){
+            left.parent = null;
+        }
+        if (right != null){
+            right.parent = null;
+        }
+
+        int cmp = e.compareTo(tree.data);
+        if (cmp < 0){
+            Split<E> split = splitTree(left, e);
+            split.right = joinTrees(split.right, tree, right);
+            return split;
+        } else if (cmp > 0){
+            Split<E> split = splitTree(right, e);
+            split.left = joinTrees(left, tree, split.left);
+            return split;
+        }
+        return new Split<E>(left, tree, right);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Makes left and right the children of this node and recomputes its cached values
+     * @param left the new left child, or null
+     * @param right the new right child, or null
+     */
+    private void link(BinarySearchTree<E> left, BinarySearchTree<E> right){
+        this.left = left;
+        this.right = right;
+        if (left != null){
+            left.parent = this;
+        }
+        if (right != null){
+            right.parent = this;
+        }
+        update();
+    }
+
     /**
      * Running Time --> O(log n)
      * Gets the root of the tree
@@ -560,4 +1498,299 @@ public class BinarySearchTree<E extends Comparable<E>> {
         }
         return curr;
     }
+
+    /**
+     * An iterator which walks the tree in order by moving from each node to its successor using the parent pointers.
+     * It stops after the last node it was given, so it can cover a range of the tree as well as all of it.
+     */
+    private class InOrderIterator implements Iterator<E> {
+        private BinarySearchTree<E> next;
+        private final BinarySearchTree<E> last;
+
+        InOrderIterator(BinarySearchTree<E> first, BinarySearchTree<E> last) {
+            this.next = first;
+            this.last = last;
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Determines if there is data left to iterate over
+         * @return true or false
+         */
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Running Time --> O(1) amortized
+         * Returns the next data in order and advances the iterator
+         * @return the next data in the tree
+         */
+        public E next() {
+            if (next == null){
+                throw new NoSuchElementException();
+            }
+
+            E e = next.data;
+            next = next == last ? null : nextInOrder(next, BinarySearchTree.this);
+            return e;
+        }
+    }
+
+    /**
+     * Hands out the data of a sorted input one element at a time while building a tree from it, making sure that the
+     * input really is in strictly ascending order.
+     */
+    private static class SortedLoader<E extends Comparable<E>> {
+        private final Iterator<? extends E> source;
+        private E previous;
+
+        SortedLoader(Iterator<? extends E> source) {
+            this.source = source;
+        }
+
+        /**
+         * Running Time --> O(n)
+         * Fills an empty node with a balanced subtree of n nodes taking its data from the input in order, so the
+         * left subtree is filled first, then the node itself and then the right subtree.
+         * @param node the empty node at the top of the subtree
+         * @param n the number of nodes the subtree will have
+         */
+        void fill(BinarySearchTree<E> node, int n) {
+            int leftCount = (n - 1) / 2;
+            int rightCount = n - 1 - leftCount;
+
+            if (leftCount > 0){
+                node.left = node.newNode();
+                node.left.parent = node;
+                fill(node.left, leftCount);
+            }
+
+            node.data = next();
+
+            if (rightCount > 0){
+                node.right = node.newNode();
+                node.right.parent = node;
+                fill(node.right, rightCount);
+            }
+
+            // the two subtrees differ in size by at most one so the node is balanced
+            node.update();
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Takes the next element of the input
+         * @return the next element
+         */
+        private E next() {
+            if (!source.hasNext()){
+                throw new IllegalArgumentException("The input has fewer elements than the size of the tree");
+            }
+
+            E e = source.next();
+            if (previous != null && previous.compareTo(e) >= 0){
+                throw new IllegalArgumentException("The input is not in strictly ascending order");
+            }
+            previous = e;
+            return e;
+        }
+    }
+
+    /**
+     * The three pieces a tree is split into: the data smaller than the split point, the node holding the split point
+     * if the tree had one, and the data larger than the split point.
+     */
+    private static class Split<E extends Comparable<E>> {
+        BinarySearchTree<E> left;
+        BinarySearchTree<E> node;
+        BinarySearchTree<E> right;
+
+        Split(BinarySearchTree<E> left, BinarySearchTree<E> node, BinarySearchTree<E> right) {
+            this.left = left;
+            this.node = node;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Merges a range of a sorted batch into or out of a detached tree. The tree is split around the middle of the
+     * range, both halves of the range are merged into the matching pieces, and the pieces are joined again. The two
+     * halves touch disjoint parts of the tree, so for large ranges one of them is forked off to another thread.
+     */
+    private static class BatchTask<E extends Comparable<E>> extends RecursiveTask<BinarySearchTree<E>> {
+        // RecursiveTask is Serializable, though a task is never actually serialized
+        private static final long serialVersionUID = 1L;
+
+        // the root of the tree, which new nodes are made from so they keep its aggregate
+        private final BinarySearchTree<E> root;
+        private final BinarySearchTree<E> tree;
+        private final List<E> batch;
+        private final int lo;
+        private final int hi;
+        private final boolean difference;
+
+        BatchTask(BinarySearchTree<E> root, BinarySearchTree<E> tree, List<E> batch, int lo, int hi,
+                  boolean difference) {
+            this.root = root;
+            this.tree = tree;
+            this.batch = batch;
+            this.lo = lo;
+            this.hi = hi;
+            this.difference = difference;
+        }
+
+        /**
+         * Running Time --> O(m log(n/m + 1))
+         * Merges the range of the batch with the tree
+         * @return the top of the resulting tree, or null if it is empty
+         */
+        protected BinarySearchTree<E> compute() {
+            if (lo >= hi){
+                return tree;
+            } else if (tree == null){
+                if (difference){
+                    return null;
+                }
+
+                // nothing to merge with, so the range is loaded as a balanced tree of its own
+                BinarySearchTree<E> loaded = root.newNode();
+                new SortedLoader<E>(batch.subList(lo, hi).iterator()).fill(loaded, hi - lo);
+                return loaded;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            Split<E> split = splitTree(tree, batch.get(mid));
+            BatchTask<E> leftTask = new BatchTask<E>(root, split.left, batch, lo, mid, difference);
+            BatchTask<E> rightTask = new BatchTask<E>(root, split.right, batch, mid + 1, hi, difference);
+
+            BinarySearchTree<E> left;
+            BinarySearchTree<E> right;
+            if (hi - lo >= PARALLEL_BATCH){
+                leftTask.fork();
+                right = rightTask.compute();
+                left = leftTask.join();
+            } else {
+                left = leftTask.compute();
+                right = rightTask.compute();
+            }
+
+            if (difference){
+                if (split.node != null){
+                    split.node.deleteNodeData(split.node);
+                }
+                return joinTrees(left, right);
+            }
+
+            BinarySearchTree<E> node = split.node;
+            if (node == null){
+                node = root.newNode();
+                node.data = batch.get(mid);
+                node.update();
+            }
+            return joinTrees(left, node, right);
+        }
+    }
+
+    /**
+     * A spliterator over the nodes whose ranks lie between index and fence. It walks the range with the parent
+     * pointers like the in order iterator and splits it in half by looking up the middle node with select.
+     */
+    private class InOrderSpliterator implements Spliterator<E> {
+        private BinarySearchTree<E> next;
+        private int index;
+        private final int fence;
+
+        InOrderSpliterator(BinarySearchTree<E> next, int index, int fence) {
+            this.next = next;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        /**
+         * Running Time --> O(1) amortized
+         * Hands the next data of the range to the action
+         * @param action the action performed on the data
+         * @return true if there was data left in the range
+         */
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (index >= fence){
+                return false;
+            }
+
+            action.accept(next.data);
+            index++;
+            next = index < fence ? nextInOrder(next, BinarySearchTree.this) : null;
+            return true;
+        }
+
+        /**
+         * Running Time --> O(log n)
+         * Splits off the first half of the range into a new spliterator
+         * @return the spliterator over the first half, or null if the range is too small to split
+         */
+        public Spliterator<E> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index){
+                return null;
+            }
+
+            Spliterator<E> prefix = new InOrderSpliterator(next, index, mid);
+            next = select(mid);
+            index = mid;
+            return prefix;
+        }
+
+        /**
+         * Running Time --> O(1)
+         * @return the number of elements left in the range
+         */
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        /**
+         * Running Time --> O(1)
+         * @return the characteristics of the spliterator
+         */
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL
+                    | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        /**
+         * Running Time --> O(1)
+         * @return null since the data is sorted by its natural order
+         */
+        public Comparator<? super E> getComparator() {
+            return null;
+        }
+    }
+
+    /**
+     * An associative way of summarizing the data of a tree, such as a sum, a minimum or a maximum. Every node of a tree
+     * created with an aggregate caches the aggregate of its subtree and keeps it up to date through every insertion,
+     * deletion and rotation. The combine function has to be associative and identity has to leave any value unchanged
+     * when combined with it, but combine does not need to be commutative since values are always combined in order.
+     */
+    public interface Aggregate<E, A> {
+
+        /**
+         * @return the aggregate of no data at all
+         */
+        A identity();
+
+        /**
+         * @param e a single piece of data
+         * @return the aggregate of just that data
+         */
+        A lift(E e);
+
+        /**
+         * @param left the aggregate of some data
+         * @param right the aggregate of data which comes after it
+         * @return the aggregate of all the data of both
+         */
+        A combine(A left, A right);
+    }
 }
@@ -0,0 +1,988 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Samuel Bernheim
+ * This is a thread safe version of the Binary Search AVL type tree which can be shared between threads without any
+ * outside locking, built the way Bronson, Casper, Chafi and Olukotun's concurrent AVL tree is. There is no lock for
+ * the whole tree. Every node carries a version number which a rotation changes whenever it moves the node down and
+ * shrinks the range of keys beneath it. Readers never lock and never write: they walk down hand over hand, remembering
+ * the version of each node they pass, and only retry from a node whose version changed while they were below it.
+ * Writers lock just the nodes they change, always a parent before its child.
+ *
+ * Deleting a node with two children does not restructure the tree. The node is only marked as no longer present and
+ * stays behind as a routing node, which is unlinked later by rebalancing once it has a free side.
+ */
+
+public class ConcurrentBinarySearchTree<E extends Comparable<E>> {
+
+    // set on a node once it has been removed from the tree
+    private static final long UNLINKED = 1;
+    // set on a node while a rotation moves it down
+    private static final long SHRINKING = 2;
+    // added to the version of a node each time a rotation which moved it down is over
+    private static final long SHRINK_INCREMENT = 4;
+    // how long a reader spins on a shrinking node before it waits on the node's lock
+    private static final int SPIN_COUNT = 100;
+
+    private static final int LEFT = -1;
+    private static final int RIGHT = 1;
+
+    // results of nodeCondition other than a new height
+    private static final int UNLINK_REQUIRED = -1;
+    private static final int REBALANCE_REQUIRED = -2;
+    private static final int NOTHING_REQUIRED = -3;
+
+    // returned by the attempts when a node they depend on changed and the caller has to try again
+    private static final Object RETRY = new Object();
+
+    // a node without data which is never moved or removed, the real root is its right child
+    private final Node<E> rootHolder = new Node<E>(null, false, null);
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentBinarySearchTree() {
+
+    }
+
+    /**
+     * Running Time --> O(number of threads)
+     * Gives the number of elements in the tree. While other threads are changing the tree this is only an estimate.
+     * @return an integer representing the number of elements in the tree
+     */
+    public int size() {
+        return (int) size.sum();
+    }
+
+    /**
+     * Running Time --> O(number of threads)
+     * Determines if the tree contains any elements.
+     * @return true or false
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Searches the tree for the data the user specifies
+     * @param e the data the user is searching for
+     * @return true or false if e is in the tree or not
+     */
+    public boolean search(E e) {
+        while (true){
+            Object result = attemptSearch(e, rootHolder, RIGHT, 0);
+            if (result != RETRY){
+                return (Boolean) result;
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the largest data in the tree which is smaller than or equal to e. The result was in the tree at some
+     * point during the call.
+     * @param e the data to search around
+     * @return the floor of e or null if every element is larger than e
+     */
+    public E floor(E e) {
+        return near(e, LEFT);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the smallest data in the tree which is larger than or equal to e. The result was in the tree at some
+     * point during the call.
+     * @param e the data to search around
+     * @return the ceiling of e or null if every element is smaller than e
+     */
+    public E ceiling(E e) {
+        return near(e, RIGHT);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the smallest data in the tree
+     * @return the minimum or null if the tree is empty
+     */
+    public E findMin() {
+        return extreme(LEFT);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the largest data in the tree
+     * @return the maximum or null if the tree is empty
+     */
+    public E findMax() {
+        return extreme(RIGHT);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Inserts e into the tree while maintaining the BST AVL properties.
+     * @param e the data which will be inserted into the tree
+     * @return true if e was inserted or false if it was already in the tree
+     */
+    public boolean insert(E e) {
+        if (e == null){
+            throw new NullPointerException("A tree cannot hold null");
+        }
+        boolean changed = update(e, true);
+        if (changed){
+            size.increment();
+        }
+        return changed;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Deletes e from the tree while preserving the BST AVL properties
+     * @param e the data which will be deleted from the tree
+     * @return true if e was deleted or false if it was not in the tree
+     */
+    public boolean delete(E e) {
+        boolean changed = update(e, false);
+        if (changed){
+            size.decrement();
+        }
+        return changed;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Searches the subtree of one child of a node. The version of the node was read before its child was, so if the
+     * version is still the same after the child has been read, the child really was the node's child at that moment
+     * and every key which could be in the subtree is still below the node.
+     * @param e the data the user is searching for
+     * @param node the node whose child is searched
+     * @param dirToC the side of the child, LEFT or RIGHT
+     * @param nodeV the version of the node when the search reached it
+     * @return true or false if e is in the subtree, or RETRY if the node changed
+     */
+    private Object attemptSearch(E e, Node<E> node, int dirToC, long nodeV) {
+        while (true){
+            Node<E> child = node.child(dirToC);
+            if (child == null){
+                return node.version != nodeV ? RETRY : Boolean.FALSE;
+            }
+
+            int cmp = e.compareTo(child.data);
+            if (cmp == 0){
+                return child.present;
+            }
+
+            long childV = child.version;
+            if (isShrinkingOrUnlinked(childV)){
+                child.waitUntilNotShrinking(childV);
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+            } else if (child != node.child(dirToC)){
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+            } else {
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+                Object result = attemptSearch(e, child, Integer.signum(cmp), childV);
+                if (result != RETRY){
+                    return result;
+                }
+                // the child changed under the search, so it is tried again from this node
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Runs attemptNear from the root until it does not have to be retried
+     * @param e the data to search around
+     * @param side RIGHT for the ceiling of e or LEFT for its floor
+     * @return the data found or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private E near(E e, int side) {
+        while (true){
+            Object result = attemptNear(e, rootHolder, RIGHT, 0, side);
+            if (result != RETRY){
+                return (E) result;
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the ceiling or floor of e in the subtree of one child of a node, validating the child the same way
+     * attemptSearch does. A node on the far side of e is a candidate, and is the answer if nothing closer to e turns
+     * up below it.
+     * @param e the data to search around
+     * @param node the node whose child is searched
+     * @param dirToC the side of the child, LEFT or RIGHT
+     * @param nodeV the version of the node when the search reached it
+     * @param side RIGHT for the ceiling of e or LEFT for its floor
+     * @return the data found, null if there is none, or RETRY if the node changed
+     */
+    private Object attemptNear(E e, Node<E> node, int dirToC, long nodeV, int side) {
+        while (true){
+            Node<E> child = node.child(dirToC);
+            if (child == null){
+                return node.version != nodeV ? RETRY : null;
+            }
+
+            long childV = child.version;
+            if (isShrinkingOrUnlinked(childV)){
+                child.waitUntilNotShrinking(childV);
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+            } else if (child != node.child(dirToC)){
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+            } else {
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+
+                int cmp = Integer.signum(e.compareTo(child.data));
+                Object result;
+                if (cmp == 0 && child.present){
+                    return child.data;
+                } else if (cmp == -side){
+                    // the child is on the far side of e, so something below it on the near side may be closer
+                    result = attemptNear(e, child, cmp, childV, side);
+                    if (result == null){
+                        result = child.present ? child.data : attemptExtreme(child, side, childV, -side);
+                    }
+                } else {
+                    result = attemptNear(e, child, side, childV, side);
+                }
+                // a rotation which lifted the child above the node would have changed the node's version, and the
+                // child's subtree could then hold keys on the wrong side of the node
+                if (result != RETRY){
+                    return node.version != nodeV ? RETRY : result;
+                }
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Runs attemptExtreme from the root until it does not have to be retried
+     * @param towards LEFT for the minimum or RIGHT for the maximum
+     * @return the data found or null if the tree is empty
+     */
+    @SuppressWarnings("unchecked")
+    private E extreme(int towards) {
+        while (true){
+            Object result = attemptExtreme(rootHolder, RIGHT, 0, towards);
+            if (result != RETRY){
+                return (E) result;
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the smallest or largest present data in the subtree of one child of a node, skipping routing nodes
+     * @param node the node whose child is searched
+     * @param dirToC the side of the child, LEFT or RIGHT
+     * @param nodeV the version of the node when the search reached it
+     * @param towards LEFT for the minimum or RIGHT for the maximum
+     * @return the data found, null if the subtree holds none, or RETRY if the node changed
+     */
+    private Object attemptExtreme(Node<E> node, int dirToC, long nodeV, int towards) {
+        while (true){
+            Node<E> child = node.child(dirToC);
+            if (child == null){
+                return node.version != nodeV ? RETRY : null;
+            }
+
+            long childV = child.version;
+            if (isShrinkingOrUnlinked(childV)){
+                child.waitUntilNotShrinking(childV);
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+            } else if (child != node.child(dirToC)){
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+            } else {
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+
+                Object result = attemptExtreme(child, towards, childV, towards);
+                if (result == null){
+                    // only routing nodes on that side, so the child or the other side of it holds the answer
+                    result = child.present ? child.data : attemptExtreme(child, -towards, childV, towards);
+                }
+                if (result != RETRY){
+                    return node.version != nodeV ? RETRY : result;
+                }
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Marks e as present or not present in the tree, starting over from the root whenever an attempt has to be
+     * retried
+     * @param e the data which is changed
+     * @param present true to insert e or false to delete it
+     * @return true if the tree changed
+     */
+    private boolean update(E e, boolean present) {
+        while (true){
+            Node<E> root = rootHolder.right;
+            if (root == null){
+                if (!present){
+                    return false;
+                }
+                synchronized (rootHolder){
+                    if (rootHolder.right == null){
+                        rootHolder.right = new Node<E>(e, true, rootHolder);
+                        return true;
+                    }
+                }
+            } else {
+                long rootV = root.version;
+                if (isShrinkingOrUnlinked(rootV)){
+                    root.waitUntilNotShrinking(rootV);
+                } else if (root == rootHolder.right){
+                    Object result = attemptUpdate(e, present, rootHolder, root, rootV);
+                    if (result != RETRY){
+                        return (Boolean) result;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Walks down from a node the same way attemptSearch does, and either changes the node holding e or links a new
+     * leaf for it under the last node of the walk, locking only that node
+     * @param e the data which is changed
+     * @param present true to insert e or false to delete it
+     * @param parent the parent of node
+     * @param node the node the walk has reached
+     * @param nodeV the version of node when the walk reached it
+     * @return true or false if the tree changed or not, or RETRY if node changed
+     */
+    private Object attemptUpdate(E e, boolean present, Node<E> parent, Node<E> node, long nodeV) {
+        int cmp = Integer.signum(e.compareTo(node.data));
+        if (cmp == 0){
+            return attemptNodeUpdate(present, parent, node);
+        }
+
+        while (true){
+            Node<E> child = node.child(cmp);
+            if (node.version != nodeV){
+                return RETRY;
+            }
+
+            if (child == null){
+                if (!present){
+                    return false;
+                }
+
+                Node<E> damaged;
+                synchronized (node){
+                    if (node.version != nodeV){
+                        return RETRY;
+                    }
+                    if (node.child(cmp) != null){
+                        // another thread linked a child here first, so the walk goes on into it
+                        continue;
+                    }
+                    node.setChild(cmp, new Node<E>(e, true, node));
+                    damaged = fixHeight(node);
+                }
+                fixHeightAndRebalance(damaged);
+                return true;
+            }
+
+            long childV = child.version;
+            if (isShrinkingOrUnlinked(childV)){
+                child.waitUntilNotShrinking(childV);
+            } else if (child == node.child(cmp)){
+                if (node.version != nodeV){
+                    return RETRY;
+                }
+                Object result = attemptUpdate(e, present, node, child, childV);
+                if (result != RETRY){
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(1), plus O(log n) for rebalancing after an unlink
+     * Changes the node holding e. Inserting into a routing node only marks it present again. Deleting a node with
+     * two children only marks it as a routing node, while a node with a free side is unlinked right away, which needs
+     * the locks of both its parent and itself.
+     * @param present true to insert e or false to delete it
+     * @param parent the parent of node
+     * @param node the node holding e
+     * @return true or false if the tree changed or not, or RETRY if node moved
+     */
+    private Object attemptNodeUpdate(boolean present, Node<E> parent, Node<E> node) {
+        if (!present && !node.present){
+            return false;
+        }
+
+        if (!present && (node.left == null || node.right == null)){
+            Node<E> damaged;
+            synchronized (parent){
+                if (isUnlinked(parent.version) || node.parent != parent){
+                    return RETRY;
+                }
+                synchronized (node){
+                    if (isUnlinked(node.version)){
+                        return RETRY;
+                    }
+                    if (!node.present){
+                        return false;
+                    }
+                    if (!attemptUnlink(parent, node)){
+                        return RETRY;
+                    }
+                }
+                damaged = fixHeight(parent);
+            }
+            fixHeightAndRebalance(damaged);
+            return true;
+        }
+
+        synchronized (node){
+            if (isUnlinked(node.version)){
+                return RETRY;
+            }
+            if (node.present == present){
+                return false;
+            }
+            if (!present && (node.left == null || node.right == null)){
+                // the node lost a child in the meantime, so it is unlinked instead
+                return RETRY;
+            }
+            node.present = present;
+            return true;
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Replaces a node with a free side by its other child. The caller holds the locks of the parent and the node.
+     * @param parent the parent of node
+     * @param node the node which is unlinked
+     * @return true if the node was unlinked or false if it has two children or is no longer a child of parent
+     */
+    private boolean attemptUnlink(Node<E> parent, Node<E> node) {
+        Node<E> left = node.left;
+        Node<E> right = node.right;
+        if ((left != null && right != null) || (parent.left != node && parent.right != node)){
+            return false;
+        }
+
+        Node<E> splice = left != null ? left : right;
+        if (parent.left == node){
+            parent.left = splice;
+        } else {
+            parent.right = splice;
+        }
+        if (splice != null){
+            splice.parent = parent;
+        }
+
+        node.version = UNLINKED;
+        node.present = false;
+        return true;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Walks up from a node whose height may be wrong, fixing heights and rotating where the tree is out of balance.
+     * Each step locks only the node it fixes, or the node and its parent for a rotation or an unlink.
+     * @param node the lowest node which may need fixing, or null
+     */
+    private void fixHeightAndRebalance(Node<E> node) {
+        while (node != null && node.parent != null){
+            int condition = nodeCondition(node);
+            if (condition == NOTHING_REQUIRED || isUnlinked(node.version)){
+                return;
+            }
+
+            if (condition != UNLINK_REQUIRED && condition != REBALANCE_REQUIRED){
+                synchronized (node){
+                    node = fixHeight(node);
+                }
+            } else {
+                Node<E> parent = node.parent;
+                synchronized (parent){
+                    if (!isUnlinked(parent.version) && node.parent == parent){
+                        synchronized (node){
+                            // an unlinked node keeps its old parent, so it is checked again under its own lock
+                            if (isUnlinked(node.version)){
+                                return;
+                            }
+                            node = rebalance(parent, node);
+                        }
+                    }
+                    // otherwise the node moved and the same node is tried again
+                }
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Works out what a node needs without locking it
+     * @param node the node to look at
+     * @return UNLINK_REQUIRED for a routing node with a free side, REBALANCE_REQUIRED for a node out of balance,
+     * NOTHING_REQUIRED if the node is fine, or otherwise the height the node should have
+     */
+    private int nodeCondition(Node<E> node) {
+        Node<E> left = node.left;
+        Node<E> right = node.right;
+        if ((left == null || right == null) && !node.present){
+            return UNLINK_REQUIRED;
+        }
+
+        int hL = height(left);
+        int hR = height(right);
+        int hRepl = 1 + Math.max(hL, hR);
+        int balanceFactor = hL - hR;
+        if (balanceFactor < -1 || balanceFactor > 1){
+            return REBALANCE_REQUIRED;
+        }
+        return node.height != hRepl ? hRepl : NOTHING_REQUIRED;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Fixes the height of a node. The caller holds the node's lock.
+     * @param node the node to fix
+     * @return the next node to look at, which is the node itself if it needs more than a new height, its parent if the
+     * height changed, or null if nothing had to be done
+     */
+    private Node<E> fixHeight(Node<E> node) {
+        int condition = nodeCondition(node);
+        if (condition == REBALANCE_REQUIRED || condition == UNLINK_REQUIRED){
+            return node;
+        } else if (condition == NOTHING_REQUIRED){
+            return null;
+        }
+        node.height = condition;
+        return node.parent;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Unlinks a routing node with a free side, or rotates a node which is out of balance. The caller holds the locks
+     * of the parent and the node.
+     * @param parent the parent of node
+     * @param node the node to fix
+     * @return the next node to look at or null if nothing is left to do
+     */
+    private Node<E> rebalance(Node<E> parent, Node<E> node) {
+        Node<E> left = node.left;
+        Node<E> right = node.right;
+        if ((left == null || right == null) && !node.present){
+            return attemptUnlink(parent, node) ? fixHeight(parent) : node;
+        }
+
+        int hN = node.height;
+        int hL = height(left);
+        int hR = height(right);
+        int hRepl = 1 + Math.max(hL, hR);
+        int balanceFactor = hL - hR;
+
+        if (balanceFactor > 1){
+            return rebalanceToRight(parent, node, left, hR);
+        } else if (balanceFactor < -1){
+            return rebalanceToLeft(parent, node, right, hL);
+        } else if (hRepl != hN){
+            node.height = hRepl;
+            return fixHeight(parent);
+        }
+        return null;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Fixes a node whose left subtree is too tall with a single right rotation or a double rotation. The caller holds
+     * the locks of the parent and the node, and the left child is locked here.
+     * @param parent the parent of node
+     * @param node the node which is out of balance
+     * @param left the left child of node
+     * @param hR the height of the right subtree of node
+     * @return the next node to look at or null if nothing is left to do
+     */
+    private Node<E> rebalanceToRight(Node<E> parent, Node<E> node, Node<E> left, int hR) {
+        synchronized (left){
+            int hL = left.height;
+            if (hL - hR <= 1){
+                return node;
+            }
+
+            Node<E> leftRight = left.right;
+            int hLL = height(left.left);
+            int hLR = height(leftRight);
+            if (hLL >= hLR){
+                return rotateRight(parent, node, left, hR, hLL, leftRight, hLR);
+            }
+
+            synchronized (leftRight){
+                hLR = leftRight.height;
+                if (hLL >= hLR){
+                    return rotateRight(parent, node, left, hR, hLL, leftRight, hLR);
+                }
+
+                int hLRL = height(leftRight.left);
+                int balanceFactor = hLL - hLRL;
+                if (balanceFactor >= -1 && balanceFactor <= 1 && !((hLL == 0 || hLRL == 0) && !left.present)){
+                    return rotateRightOverLeft(parent, node, left, hR, hLL, leftRight, hLRL);
+                }
+            }
+            // the left child has to be fixed first
+            return rebalanceToLeft(node, left, leftRight, hLL);
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Fixes a node whose right subtree is too tall with a single left rotation or a double rotation. The caller holds
+     * the locks of the parent and the node, and the right child is locked here.
+     * @param parent the parent of node
+     * @param node the node which is out of balance
+     * @param right the right child of node
+     * @param hL the height of the left subtree of node
+     * @return the next node to look at or null if nothing is left to do
+     */
+    private Node<E> rebalanceToLeft(Node<E> parent, Node<E> node, Node<E> right, int hL) {
+        synchronized (right){
+            int hR = right.height;
+            if (hL - hR >= -1){
+                return node;
+            }
+
+            Node<E> rightLeft = right.left;
+            int hRL = height(rightLeft);
+            int hRR = height(right.right);
+            if (hRR >= hRL){
+                return rotateLeft(parent, node, hL, right, rightLeft, hRL, hRR);
+            }
+
+            synchronized (rightLeft){
+                hRL = rightLeft.height;
+                if (hRR >= hRL){
+                    return rotateLeft(parent, node, hL, right, rightLeft, hRL, hRR);
+                }
+
+                int hRLR = height(rightLeft.right);
+                int balanceFactor = hRR - hRLR;
+                if (balanceFactor >= -1 && balanceFactor <= 1 && !((hRR == 0 || hRLR == 0) && !right.present)){
+                    return rotateLeftOverRight(parent, node, hL, right, rightLeft, hRR, hRLR);
+                }
+            }
+            // the right child has to be fixed first
+            return rebalanceToRight(node, right, rightLeft, hRR);
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Performs a right rotation on a node, whose version marks it as shrinking while it moves down. The caller holds
+     * the locks of the parent, the node and its left child.
+     * @return the next node to look at or null if nothing is left to do
+     */
+    private Node<E> rotateRight(Node<E> parent, Node<E> node, Node<E> left, int hR, int hLL, Node<E> leftRight,
+                                int hLR) {
+        long nodeV = node.version;
+        node.version = beginShrink(nodeV);
+
+        node.left = leftRight;
+        if (leftRight != null){
+            leftRight.parent = node;
+        }
+        left.right = node;
+        node.parent = left;
+        if (parent.left == node){
+            parent.left = left;
+        } else {
+            parent.right = left;
+        }
+        left.parent = parent;
+
+        int hNRepl = 1 + Math.max(hLR, hR);
+        node.height = hNRepl;
+        left.height = 1 + Math.max(hLL, hNRepl);
+        node.version = endShrink(nodeV);
+
+        // the rotation may have left either node needing more work
+        int balanceN = hLR - hR;
+        if (balanceN < -1 || balanceN > 1){
+            return node;
+        }
+        if ((leftRight == null || hR == 0) && !node.present){
+            return node;
+        }
+        int balanceL = hLL - hNRepl;
+        if (balanceL < -1 || balanceL > 1){
+            return left;
+        }
+        if (hLL == 0 && !left.present){
+            return left;
+        }
+        return fixHeight(parent);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Performs a left rotation on a node, whose version marks it as shrinking while it moves down. The caller holds
+     * the locks of the parent, the node and its right child.
+     * @return the next node to look at or null if nothing is left to do
+     */
+    private Node<E> rotateLeft(Node<E> parent, Node<E> node, int hL, Node<E> right, Node<E> rightLeft, int hRL,
+                               int hRR) {
+        long nodeV = node.version;
+        node.version = beginShrink(nodeV);
+
+        node.right = rightLeft;
+        if (rightLeft != null){
+            rightLeft.parent = node;
+        }
+        right.left = node;
+        node.parent = right;
+        if (parent.left == node){
+            parent.left = right;
+        } else {
+            parent.right = right;
+        }
+        right.parent = parent;
+
+        int hNRepl = 1 + Math.max(hL, hRL);
+        node.height = hNRepl;
+        right.height = 1 + Math.max(hNRepl, hRR);
+        node.version = endShrink(nodeV);
+
+        int balanceN = hRL - hL;
+        if (balanceN < -1 || balanceN > 1){
+            return node;
+        }
+        if ((rightLeft == null || hL == 0) && !node.present){
+            return node;
+        }
+        int balanceR = hRR - hNRepl;
+        if (balanceR < -1 || balanceR > 1){
+            return right;
+        }
+        if (hRR == 0 && !right.present){
+            return right;
+        }
+        return fixHeight(parent);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Performs a double rotation which lifts the right child of the left child of a node above both of them. The node
+     * and its left child both move down, so both are marked as shrinking. The caller holds the locks of the parent,
+     * the node, its left child and that child's right child.
+     * @return the next node to look at or null if nothing is left to do
+     */
+    private Node<E> rotateRightOverLeft(Node<E> parent, Node<E> node, Node<E> left, int hR, int hLL,
+                                        Node<E> leftRight, int hLRL) {
+        long nodeV = node.version;
+        long leftV = left.version;
+        Node<E> leftRightLeft = leftRight.left;
+        Node<E> leftRightRight = leftRight.right;
+        int hLRR = height(leftRightRight);
+
+        node.version = beginShrink(nodeV);
+        left.version = beginShrink(leftV);
+
+        node.left = leftRightRight;
+        if (leftRightRight != null){
+            leftRightRight.parent = node;
+        }
+        left.right = leftRightLeft;
+        if (leftRightLeft != null){
+            leftRightLeft.parent = left;
+        }
+        leftRight.left = left;
+        left.parent = leftRight;
+        leftRight.right = node;
+        node.parent = leftRight;
+        if (parent.left == node){
+            parent.left = leftRight;
+        } else {
+            parent.right = leftRight;
+        }
+        leftRight.parent = parent;
+
+        int hNRepl = 1 + Math.max(hLRR, hR);
+        node.height = hNRepl;
+        int hLRepl = 1 + Math.max(hLL, hLRL);
+        left.height = hLRepl;
+        leftRight.height = 1 + Math.max(hLRepl, hNRepl);
+
+        node.version = endShrink(nodeV);
+        left.version = endShrink(leftV);
+
+        int balanceN = hLRR - hR;
+        if (balanceN < -1 || balanceN > 1){
+            return node;
+        }
+        if ((leftRightRight == null || hR == 0) && !node.present){
+            return node;
+        }
+        int balanceLR = hLRepl - hNRepl;
+        if (balanceLR < -1 || balanceLR > 1){
+            return leftRight;
+        }
+        return fixHeight(parent);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Performs a double rotation which lifts the left child of the right child of a node above both of them. The node
+     * and its right child both move down, so both are marked as shrinking. The caller holds the locks of the parent,
+     * the node, its right child and that child's left child.
+     * @return the next node to look at or null if nothing is left to do
+     */
+    private Node<E> rotateLeftOverRight(Node<E> parent, Node<E> node, int hL, Node<E> right, Node<E> rightLeft,
+                                        int hRR, int hRLR) {
+        long nodeV = node.version;
+        long rightV = right.version;
+        Node<E> rightLeftLeft = rightLeft.left;
+        Node<E> rightLeftRight = rightLeft.right;
+        int hRLL = height(rightLeftLeft);
+
+        node.version = beginShrink(nodeV);
+        right.version = beginShrink(rightV);
+
+        node.right = rightLeftLeft;
+        if (rightLeftLeft != null){
+            rightLeftLeft.parent = node;
+        }
+        right.left = rightLeftRight;
+        if (rightLeftRight != null){
+            rightLeftRight.parent = right;
+        }
+        rightLeft.right = right;
+        right.parent = rightLeft;
+        rightLeft.left = node;
+        node.parent = rightLeft;
+        if (parent.left == node){
+            parent.left = rightLeft;
+        } else {
+            parent.right = rightLeft;
+        }
+        rightLeft.parent = parent;
+
+        int hNRepl = 1 + Math.max(hL, hRLL);
+        node.height = hNRepl;
+        int hRRepl = 1 + Math.max(hRLR, hRR);
+        right.height = hRRepl;
+        rightLeft.height = 1 + Math.max(hNRepl, hRRepl);
+
+        node.version = endShrink(nodeV);
+        right.version = endShrink(rightV);
+
+        int balanceN = hRLL - hL;
+        if (balanceN < -1 || balanceN > 1){
+            return node;
+        }
+        if ((rightLeftLeft == null || hL == 0) && !node.present){
+            return node;
+        }
+        int balanceRL = hRRepl - hNRepl;
+        if (balanceRL < -1 || balanceRL > 1){
+            return rightLeft;
+        }
+        return fixHeight(parent);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the height of a possibly missing subtree, an empty subtree has a height of 0 and a leaf a height of 1
+     * @param node the root of the subtree
+     * @return an integer representing the height of the subtree
+     */
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static boolean isShrinkingOrUnlinked(long version) {
+        return (version & (SHRINKING | UNLINKED)) != 0;
+    }
+
+    private static boolean isUnlinked(long version) {
+        return (version & UNLINKED) != 0;
+    }
+
+    private static long beginShrink(long version) {
+        return version | SHRINKING;
+    }
+
+    private static long endShrink(long version) {
+        return (version & ~SHRINKING) + SHRINK_INCREMENT;
+    }
+
+    /**
+     * A node of the tree. Everything but the data is volatile so that readers, which never lock, always see the
+     * latest links, heights and versions, while writers change a node only while holding its lock.
+     */
+    private static final class Node<E> {
+        final E data;
+        volatile boolean present;
+        volatile int height;
+        volatile long version;
+        volatile Node<E> parent;
+        volatile Node<E> left;
+        volatile Node<E> right;
+
+        Node(E data, boolean present, Node<E> parent) {
+            this.data = data;
+            this.present = present;
+            this.parent = parent;
+            this.height = 1;
+        }
+
+        Node<E> child(int dir) {
+            return dir == LEFT ? left : right;
+        }
+
+        void setChild(int dir, Node<E> child) {
+            if (dir == LEFT){
+                left = child;
+            } else {
+                right = child;
+            }
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Waits for a rotation which is moving this node down to finish. The rotating thread holds the node's lock,
+         * so after a short spin the reader simply waits for that lock.
+         * @param version the version which showed the node as shrinking
+         */
+        void waitUntilNotShrinking(long version) {
+            if ((version & SHRINKING) == 0){
+                return;
+            }
+            for (int spin = 0; spin < SPIN_COUNT; spin++){
+                if (this.version != version){
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+            synchronized (this){
+                // nothing to do, holding the lock for a moment means the rotation is over
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This is a stress test and read scaling harness for ConcurrentBinarySearchTree. It first has every thread insert,
+ * delete and search its own stripe of keys against a private model while the others do the same, and checks that
+ * the tree ends up holding exactly what the models do. Then it measures the throughput of lookups alone and of a mix
+ * of 90% lookups and 10% updates at 1, 2, 4, 8 and 16 threads, next to a BinarySearchTree behind one read write lock.
+ * Reads only scale with the number of threads as far as there are processors to run them on, so the number of
+ * processors is printed with the results.
+ *
+ * Usage: java ConcurrentBinarySearchTreeBenchmark [max threads] [key range] [milliseconds per run]
+ */
+
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class ConcurrentBinarySearchTreeBenchmark {
+
+    /**
+     * A tree the benchmark can run against, so both trees go through exactly the same loop.
+     */
+    private interface Target {
+        boolean contains(int key);
+        void toggle(int key);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int keyRange = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 20;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        System.out.println("processors: " + Runtime.getRuntime().availableProcessors());
+        stress(maxThreads, 200_000);
+
+        ConcurrentBinarySearchTree<Integer> concurrent = new ConcurrentBinarySearchTree<Integer>();
+        LockedTree locked = new LockedTree();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < keyRange / 2; i++){
+            int key = random.nextInt(keyRange);
+            concurrent.insert(key);
+            if (!locked.contains(key)){
+                locked.toggle(key);
+            }
+        }
+        Target concurrentTarget = new Target() {
+            public boolean contains(int key){
+                return concurrent.search(key);
+            }
+
+            public void toggle(int key){
+                if (!concurrent.insert(key)){
+                    concurrent.delete(key);
+                }
+            }
+        };
+
+        // one unmeasured round so the first row is not also paying for the JIT compiler
+        run(concurrentTarget, maxThreads, keyRange, 10, millis);
+        run(locked, maxThreads, keyRange, 10, millis);
+
+        for (int writePercent : new int[]{0, 10}){
+            System.out.println();
+            System.out.printf("%d%% reads, %d%% updates, %d keys, Mops/s%n", 100 - writePercent, writePercent,
+                    keyRange);
+            System.out.printf("%8s %14s %8s %14s %8s%n", "threads", "concurrent", "scaling", "locked", "scaling");
+            double concurrentBase = 0;
+            double lockedBase = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2){
+                double c = run(concurrentTarget, threads, keyRange, writePercent, millis);
+                double l = run(locked, threads, keyRange, writePercent, millis);
+                if (threads == 1){
+                    concurrentBase = c;
+                    lockedBase = l;
+                }
+                System.out.printf("%8d %14.2f %7.2fx %14.2f %7.2fx%n", threads, c, c / concurrentBase, l,
+                        l / lockedBase);
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(threads * operations * log n)
+     * Has every thread insert, delete and search random keys of its own stripe, keeping a model of which of them
+     * should be in the tree, while also asking for floors and ceilings of any key. Since no other thread touches a
+     * stripe, every answer about one's own keys has to match the model exactly.
+     * @param threads the number of threads
+     * @param operations the number of operations each thread performs
+     */
+    private static void stress(int threads, int operations) throws InterruptedException {
+        ConcurrentBinarySearchTree<Integer> tree = new ConcurrentBinarySearchTree<Integer>();
+        int stripe = 4096;
+        AtomicReference<String> failure = new AtomicReference<String>();
+        LongAdder expectedSize = new LongAdder();
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++){
+            int id = t;
+            workers[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(id);
+                Set<Integer> model = new HashSet<Integer>();
+                for (int i = 0; i < operations && failure.get() == null; i++){
+                    int key = random.nextInt(stripe) * threads + id;
+                    int op = random.nextInt(10);
+                    if (op < 4){
+                        check(failure, tree.insert(key) == model.add(key), "insert", key);
+                    } else if (op < 7){
+                        check(failure, tree.delete(key) == model.remove(key), "delete", key);
+                    } else if (op < 9){
+                        check(failure, tree.search(key) == model.contains(key), "search", key);
+                    } else {
+                        Integer floor = tree.floor(key);
+                        Integer ceiling = tree.ceiling(key);
+                        check(failure, floor == null || floor <= key, "floor", key);
+                        check(failure, ceiling == null || ceiling >= key, "ceiling", key);
+                        if (model.contains(key)){
+                            check(failure, floor != null && floor == key && ceiling != null && ceiling == key,
+                                    "floor of present", key);
+                        }
+                    }
+                }
+                expectedSize.add(model.size());
+                for (int k = 0; k < stripe && failure.get() == null; k++){
+                    int key = k * threads + id;
+                    check(failure, tree.search(key) == model.contains(key), "final search", key);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers){
+            worker.join();
+        }
+
+        if (failure.get() == null && tree.size() != expectedSize.sum()){
+            failure.set("size " + tree.size() + " but the models hold " + expectedSize.sum());
+        }
+        if (failure.get() == null){
+            Integer previous = null;
+            for (Integer key = tree.findMin(); key != null; key = tree.ceiling(key + 1)){
+                if (previous != null && key <= previous){
+                    failure.set("keys out of order at " + key);
+                    break;
+                }
+                previous = key;
+            }
+            if (failure.get() == null && previous != null && !previous.equals(tree.findMax())){
+                failure.set("findMax " + tree.findMax() + " but the last key is " + previous);
+            }
+        }
+
+        if (failure.get() != null){
+            throw new AssertionError("stress test failed: " + failure.get());
+        }
+        System.out.println("stress test passed: " + threads + " threads, " + operations + " operations each, "
+                + tree.size() + " keys left");
+    }
+
+    private static void check(AtomicReference<String> failure, boolean ok, String op, int key) {
+        if (!ok){
+            failure.compareAndSet(null, op + " gave the wrong answer for " + key);
+        }
+    }
+
+    /**
+     * Running Time --> O(millis)
+     * Runs random lookups and updates from a number of threads for a fixed time
+     * @return the throughput in millions of operations per second
+     */
+    private static double run(Target target, int threads, int keyRange, int writePercent, long millis)
+            throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder operations = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        LongAdder sink = new LongAdder();
+
+        for (int t = 0; t < threads; t++){
+            int id = t;
+            workers[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(id * 31 + 7);
+                long count = 0;
+                long found = 0;
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()){
+                    // checking the flag every 64 operations keeps it from being the thing that is measured
+                    for (int i = 0; i < 64; i++){
+                        int key = random.nextInt(keyRange);
+                        if (random.nextInt(100) < writePercent){
+                            target.toggle(key);
+                        } else if (target.contains(key)){
+                            found++;
+                        }
+                    }
+                    count += 64;
+                }
+                operations.add(count);
+                sink.add(found);
+            });
+            workers[t].start();
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers){
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return operations.sum() * 1e3 / elapsed;
+    }
+
+    /**
+     * A BinarySearchTree behind a single read write lock, the way a sequential tree is usually shared.
+     */
+    private static final class LockedTree implements Target {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private BinarySearchTree<Integer> root = new BinarySearchTree<Integer>();
+
+        public boolean contains(int key){
+            lock.readLock().lock();
+            try {
+                return root.search(key) != null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public void toggle(int key){
+            lock.writeLock().lock();
+            try {
+                root = root.search(key) == null ? root.insert(key) : root.delete(key);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,341 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Samuel Bernheim
+ * This is a hash table of ints which any number of threads can use at once without locking, built the way Cliff
+ * Click's NonBlockingHashMap is. Each slot is one long in an AtomicLongArray holding a key in its high half and a
+ * state in its low bits, and every change to a slot is a single compare and swap. Once a key has claimed a slot it
+ * keeps it for the life of the table, and deleting or re-inserting the key only flips the state between PRESENT and
+ * DELETED, so a search is a plain linear probe which never has to wait for anyone.
+ *
+ * When the table fills up a bigger one is hung off of it as its next table and the threads move the keys over
+ * together. A slot is first frozen, after which it can never change again, and then its key is copied into the next
+ * table unless the key has already claimed a slot there. An operation which runs into a frozen slot for its key makes
+ * sure that slot has been copied and carries on in the next table. Every writer copies one chunk of slots as it goes,
+ * and whoever finishes the last chunk makes the next table the top one.
+ */
+
+public class ConcurrentIntHashTable {
+
+    private static final long PRESENT = 1;
+    private static final long DELETED = 2;
+    private static final long STATE = 3;
+    // set on a slot which is being copied into the next table, after which the slot never changes again
+    private static final long FROZEN = 4;
+    // the number of slots a writer copies over each time it helps with a resize
+    private static final int COPY_CHUNK = 1024;
+
+    private final AtomicReference<Table> top;
+    private final LongAdder numOfElements = new LongAdder();
+
+    public ConcurrentIntHashTable(int tableSize) {
+        int capacity = 16;
+        while (capacity < 2 * tableSize){
+            capacity *= 2;
+        }
+        this.top = new AtomicReference<Table>(new Table(capacity));
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the total number of elements the hash table can contain
+     * @return an int representing the total number of elements the hash table can contain
+     */
+    public int totalCapcity() {
+        return top.get().slots.length();
+    }
+
+    /**
+     * Running Time --> O(number of threads)
+     * Gets the number of elements in the hash table. While other threads are changing the table this is only an
+     * estimate.
+     * @return an int representing the number of elements in the hash table
+     */
+    public int size() {
+        return (int) numOfElements.sum();
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Inserts an element into the hash table
+     * @param process is the element which will be inserted
+     * @return true if the element was inserted or false if it was already in the table
+     */
+    public boolean insert(int process) {
+        return update(top.get(), process, PRESENT, false);
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Searches the hash table for a specific value without taking any lock or writing anything
+     * @param process is the value which is being searched for in the hash table
+     * @return true or false if the value is found in the table or not
+     */
+    public boolean search(int process) {
+        return find(top.get(), process) == PRESENT;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Deletes a value from the hash table
+     * @param process is the value which is will be deleted from the hash table
+     * @return true if the value was deleted or false if it was not in the table
+     */
+    public boolean delete(int process) {
+        return update(top.get(), process, DELETED, false);
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Finds the state of a key, looking in the next tables when the key's slot is frozen or its probe sequence leaves
+     * the table
+     * @param t is the table to start in
+     * @param process is the key which is being searched for
+     * @return PRESENT or DELETED, or 0 if the key has never claimed a slot
+     */
+    private long find(Table t, int process) {
+        int mask = t.slots.length() - 1;
+        int i = mix(process) & mask;
+        for (int probe = 0; probe < t.probeLimit; probe++, i = (i + 1) & mask){
+            long v = t.slots.get(i);
+            if ((v & STATE) == 0){
+                // an empty slot ends the probe sequence, unless it is frozen and the key may be in the next table
+                return v == 0 ? 0 : find(t.next.get(), process);
+            }
+
+            if (key(v) == process){
+                if ((v & FROZEN) == 0){
+                    return v & STATE;
+                }
+                // once the key is in the next table that is where its state lives, until then it is the frozen one
+                long state = find(t.next.get(), process);
+                return state != 0 ? state : v & STATE;
+            }
+        }
+
+        Table next = t.next.get();
+        return next == null ? 0 : find(next, process);
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Sets the state of a key. A key without a slot claims the first empty one of its probe sequence. The operation
+     * moves on to the next table when the key's own slot is frozen, when its probe sequence ends in a frozen empty
+     * slot, or when the probe sequence runs past the probe limit, since in each case the key can never be changed in
+     * this table again.
+     * @param t is the table to start in
+     * @param process is the key which is changed
+     * @param want is the new state of the key, PRESENT or DELETED
+     * @param copy is true if the key is being copied out of an older table, in which case it is only added if it has
+     *             not claimed a slot yet and the number of elements is left alone
+     * @return true if the state of the key changed
+     */
+    private boolean update(Table t, int process, long want, boolean copy) {
+        if (!copy && t.next.get() != null){
+            helpCopy(t);
+        }
+
+        int mask = t.slots.length() - 1;
+        int i = mix(process) & mask;
+        for (int probe = 0; probe < t.probeLimit; ){
+            long v = t.slots.get(i);
+            if (v == 0){
+                if (want == DELETED){
+                    return false;
+                }
+                if (!t.slots.compareAndSet(i, 0, pack(process, PRESENT))){
+                    // another thread claimed the slot first, so it is read again
+                    continue;
+                }
+
+                if (!copy){
+                    numOfElements.increment();
+                }
+                if (t.claimed.incrementAndGet() >= t.slots.length() / 2){
+                    startResize(t, false);
+                }
+                return true;
+            }
+
+            boolean ours = key(v) == process && (v & STATE) != 0;
+            if ((v & FROZEN) != 0 && ((v & STATE) == 0 || ours)){
+                if (ours && copy){
+                    return false;
+                }
+                if (ours){
+                    copySlot(t, i);
+                }
+                return update(t.next.get(), process, want, copy);
+            }
+
+            if (ours){
+                if (copy || (v & STATE) == want){
+                    return false;
+                }
+                if (!t.slots.compareAndSet(i, v, pack(process, want))){
+                    continue;
+                }
+
+                if (want == PRESENT){
+                    numOfElements.increment();
+                } else {
+                    numOfElements.decrement();
+                }
+                return true;
+            }
+
+            i = (i + 1) & mask;
+            probe++;
+        }
+
+        Table next = t.next.get();
+        if (next == null){
+            if (want == DELETED){
+                return false;
+            }
+            startResize(t, true);
+            next = t.next.get();
+        }
+        return update(next, process, want, copy);
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Hangs a new table off of a table unless another thread already did. The new table is twice as big when the
+     * table is full of live keys or a probe sequence ran past the probe limit, and the same size when the table is
+     * mostly full of deleted keys, which the copy leaves behind.
+     * @param t is the table which is resized
+     * @param full is true if a probe sequence ran past the probe limit
+     */
+    private void startResize(Table t, boolean full) {
+        if (t.next.get() != null){
+            return;
+        }
+
+        int capacity = t.slots.length();
+        if (full || 4 * numOfElements.sum() >= capacity){
+            capacity *= 2;
+        }
+        t.next.compareAndSet(null, new Table(capacity));
+    }
+
+    /**
+     * Running Time --> O(COPY_CHUNK)
+     * Claims the next chunk of slots of a table which is being resized and copies them into the next table. The
+     * thread which finishes the last chunk promotes the next table.
+     * @param t is the table which is being resized
+     */
+    private void helpCopy(Table t) {
+        int length = t.slots.length();
+        int start = t.copyIndex.getAndAdd(COPY_CHUNK);
+        if (start >= length){
+            return;
+        }
+
+        int end = Math.min(start + COPY_CHUNK, length);
+        for (int i = start; i < end; i++){
+            copySlot(t, i);
+        }
+        if (t.copyDone.addAndGet(end - start) == length){
+            promote();
+        }
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Freezes a slot and copies its key into the next table if it is present there. Any number of threads may copy
+     * the same slot, since a key is only added to the next table if it has not claimed a slot there yet.
+     * @param t is the table which is being resized
+     * @param i is the slot to copy
+     */
+    private void copySlot(Table t, int i) {
+        long v = t.slots.get(i);
+        while ((v & FROZEN) == 0){
+            if (t.slots.compareAndSet(i, v, v | FROZEN)){
+                v |= FROZEN;
+            } else {
+                v = t.slots.get(i);
+            }
+        }
+
+        // deleted keys are left behind
+        if ((v & STATE) == PRESENT){
+            update(t.next.get(), key(v), PRESENT, true);
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Replaces the top table with its next table for as long as every slot of the top table has been copied
+     */
+    private void promote() {
+        Table t = top.get();
+        Table next = t.next.get();
+        while (next != null && t.copyDone.get() == t.slots.length()){
+            top.compareAndSet(t, next);
+            t = top.get();
+            next = t.next.get();
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Packs a key and a state into the value of a slot
+     * @param process is the key
+     * @param state is the state
+     * @return the value of the slot
+     */
+    private static long pack(int process, long state) {
+        return ((long) process << 32) | state;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the key out of the value of a slot
+     * @param v is the value of the slot
+     * @return the key
+     */
+    private static int key(long v) {
+        return (int) (v >>> 32);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Scrambles the bits of a value with the murmur3 finalizer, so that every bit of the value affects every bit of
+     * the result and sequential or otherwise patterned values still spread evenly over the table
+     * @param x is the value to scramble
+     * @return the scrambled value
+     */
+    private static int mix(int x) {
+        x ^= x >>> 16;
+        x *= 0x85EBCA6B;
+        x ^= x >>> 13;
+        x *= 0xC2B2AE35;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    /**
+     * One table of slots, along with the table its keys are being moved into and the progress of that move.
+     */
+    private static final class Table {
+        final AtomicLongArray slots;
+        // a probe sequence longer than this means the table is too crowded and the key goes into the next table
+        final int probeLimit;
+        // the number of slots which have been claimed by a key, deleted keys included
+        final AtomicInteger claimed = new AtomicInteger();
+        final AtomicReference<Table> next = new AtomicReference<Table>();
+        // the first slot no thread has started copying yet
+        final AtomicInteger copyIndex = new AtomicInteger();
+        // the number of slots which have been copied
+        final AtomicInteger copyDone = new AtomicInteger();
+
+        Table(int capacity) {
+            this.slots = new AtomicLongArray(capacity);
+            this.probeLimit = Math.min(capacity, 10 + capacity / 4);
+        }
+    }
+}
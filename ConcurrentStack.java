@@ -0,0 +1,149 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This is a stack which any number of threads can push to and pop from at once without locking. It is a Treiber
+ * stack: a linked list whose top is swapped with a single compare and swap, and a thread which loses the race simply
+ * tries again. When many threads fight over the top, a push which loses the race offers its element in a random slot
+ * of a small elimination array for a moment instead, and a pop which loses the race looks for such an offer. A push
+ * and a pop which meet there cancel each other out and neither of them has to touch the top at all. That only takes
+ * some of the load off the top while pushes and pops are fighting over it, every other operation still goes through
+ * the one top, so the stack does not get faster with more threads. ConcurrentStackBenchmark measures it against a
+ * locked Stack and a plain Treiber stack.
+ */
+
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class ConcurrentStack<T> {
+
+    // the number of times a push waits in the elimination array for a pop to come by
+    private static final int ELIMINATION_SPINS = 64;
+
+    private final AtomicReference<Node<T>> top = new AtomicReference<Node<T>>();
+    // each slot is either empty or holds the node of a push waiting for a pop
+    private final AtomicReferenceArray<Node<T>> elimination;
+
+    /**
+     * The elimination array gets one slot for every two processors, since it takes a push and a pop to use a slot.
+     */
+    public ConcurrentStack () {
+        int slots = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.elimination = new AtomicReferenceArray<Node<T>>(slots);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * A method which lets the user know if the stack is empty
+     * @return true if the stack is empty or false if it is not.
+     */
+    public boolean isEmpty() {
+        return top.get() == null;
+    }
+
+    /**
+     * Running Time --> O(1) without contention
+     * Adds an element to the top of the stack
+     * @param x is the element to be inserted
+     */
+    public void push(T x){
+        if (x == null){
+            throw new NullPointerException("The Stack cannot hold null");
+        }
+
+        Node<T> node = new Node<T>(x);
+        while (true){
+            Node<T> current = top.get();
+            node.next = current;
+            if (top.compareAndSet(current, node) || offer(node)){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(1) without contention
+     * A method which will remove an element from the stack based on LIFO ordering.
+     * @return the element which was on top
+     */
+    public T pop(){
+        while (true){
+            Node<T> current = top.get();
+            if (current == null){
+                throw new IndexOutOfBoundsException("No Elements Left to Pop");
+            }
+            if (top.compareAndSet(current, current.next)){
+                return current.item;
+            }
+
+            Node<T> offered = take();
+            if (offered != null){
+                return offered.item;
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Counts the elements in the stack. While other threads are changing the stack this is only an estimate.
+     * @return the size of the stack.
+     */
+    public int size(){
+        int size = 0;
+        for (Node<T> node = top.get(); node != null; node = node.next){
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Running Time --> O(ELIMINATION_SPINS)
+     * Offers the node of a push in a random slot of the elimination array and waits a moment for a pop to take it
+     * @param node is the node of the push
+     * @return true if a pop took the node, or false if the push has to try the top again
+     */
+    private boolean offer(Node<T> node){
+        int slot = ThreadLocalRandom.current().nextInt(elimination.length());
+        if (!elimination.compareAndSet(slot, null, node)){
+            return false;
+        }
+
+        for (int spin = 0; spin < ELIMINATION_SPINS; spin++){
+            if (elimination.get(slot) != node){
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+
+        // nobody came, so the offer is taken back unless a pop takes it in the meantime
+        return !elimination.compareAndSet(slot, node, null);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Looks for a push waiting in a random slot of the elimination array and takes its node
+     * @return the node of the push or null if there was none to take
+     */
+    private Node<T> take(){
+        int slot = ThreadLocalRandom.current().nextInt(elimination.length());
+        Node<T> offered = elimination.get(slot);
+        if (offered != null && elimination.compareAndSet(slot, offered, null)){
+            return offered;
+        }
+        return null;
+    }
+
+    /**
+     * A node of the linked list. Its next link is only written before the node is published by a compare and swap.
+     */
+    private static final class Node<T> {
+        final T item;
+        Node<T> next;
+
+        Node(T item) {
+            this.item = item;
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This measures how many push and pop pairs per second ConcurrentStack manages at 1, 2, 4, 8 and 16 threads, next to
+ * a Stack which every thread locks for each operation and a plain Treiber stack without an elimination array. Every
+ * thread pushes an element and then pops one, over and over, so the stacks never run dry. All three have a single
+ * top which every operation goes through, so none of them gets faster with more threads, and what the numbers show is
+ * how much each one slows down as the threads start fighting over the top. How much they fight depends on how many of
+ * them really run at once, so the number of processors is printed with the results.
+ *
+ * Usage: java ConcurrentStackBenchmark [max threads] [milliseconds per run]
+ */
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentStackBenchmark {
+
+    // the number of elements each stack holds before the threads start
+    private static final int PREFILL = 1000;
+
+    /**
+     * A stack the benchmark can run against, so all of them go through exactly the same loop.
+     */
+    private interface Target {
+        void push(Integer x);
+        Integer pop();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        System.out.println("processors: " + Runtime.getRuntime().availableProcessors());
+
+        ConcurrentStack<Integer> concurrent = new ConcurrentStack<Integer>();
+        Target elimination = new Target() {
+            public void push(Integer x){
+                concurrent.push(x);
+            }
+
+            public Integer pop(){
+                return concurrent.pop();
+            }
+        };
+        Target locked = new LockedStack();
+        Target treiber = new TreiberStack();
+        Target[] targets = {elimination, locked, treiber};
+        for (Target target : targets){
+            for (int i = 0; i < PREFILL; i++){
+                target.push(i);
+            }
+            // one unmeasured round so the first row is not also paying for the JIT compiler
+            run(target, maxThreads, millis);
+        }
+
+        System.out.println("push and pop pairs, Mops/s");
+        System.out.printf("%8s %14s %14s %14s%n", "threads", "elimination", "locked", "treiber");
+        for (int threads = 1; threads <= maxThreads; threads *= 2){
+            System.out.printf("%8d", threads);
+            for (Target target : targets){
+                System.out.printf(" %14.2f", run(target, threads, millis));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Running Time --> O(millis)
+     * Has a number of threads push and pop for a fixed time
+     * @return the throughput in millions of push and pop pairs per second
+     */
+    private static double run(Target target, int threads, long millis) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder pairs = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++){
+            Integer element = t;
+            workers[t] = new Thread(() -> {
+                long count = 0;
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!stop.get()){
+                    // checking the flag every 64 pairs keeps it from being the thing that is measured
+                    for (int i = 0; i < 64; i++){
+                        target.push(element);
+                        target.pop();
+                    }
+                    count += 64;
+                }
+                pairs.add(count);
+            });
+            workers[t].start();
+        }
+
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers){
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return pairs.sum() * 1e3 / elapsed;
+    }
+
+    /**
+     * A Stack behind a single lock, the way a sequential stack is usually shared.
+     */
+    private static final class LockedStack implements Target {
+        private final Stack<Integer> stack = new Stack<Integer>();
+
+        public synchronized void push(Integer x){
+            stack.push(x);
+        }
+
+        public synchronized Integer pop(){
+            return stack.pop();
+        }
+    }
+
+    /**
+     * A Treiber stack with nothing but the compare and swap on its top, to show what the elimination array adds.
+     */
+    private static final class TreiberStack implements Target {
+        private final AtomicReference<Node> top = new AtomicReference<Node>();
+
+        public void push(Integer x){
+            Node node = new Node(x);
+            do {
+                node.next = top.get();
+            } while (!top.compareAndSet(node.next, node));
+        }
+
+        public Integer pop(){
+            while (true){
+                Node current = top.get();
+                if (current == null){
+                    throw new IndexOutOfBoundsException("No Elements Left to Pop");
+                }
+                if (top.compareAndSet(current, current.next)){
+                    return current.item;
+                }
+            }
+        }
+
+        private static final class Node {
+            final Integer item;
+            Node next;
+
+            Node(Integer item) {
+                this.item = item;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This measures how long single inserts into intHashTable take, with the table resized all at once and with it
+ * resized incrementally. Both start small and are filled with the same random keys, so each one doubles many times
+ * along the way, and every insert is timed on its own. The average hardly differs between the two, the point of the
+ * incremental resize is the tail: a resize all at once makes one insert move every element, while the incremental one
+ * spreads that work over the inserts that follow. The percentiles and the slowest insert are printed for each, with
+ * the insert times of every measured round put together.
+ *
+ * Usage: java IntHashTableLatencyBenchmark [keys per round] [measured rounds]
+ */
+
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class IntHashTableLatencyBenchmark {
+
+    // the size each table starts at, small enough that it has to grow many times
+    private static final int INITIAL_SIZE = 16;
+    // the unmeasured rounds which let the JIT compiler settle first
+    private static final int WARM_UP_ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        int[] keys = new int[n];
+        SplittableRandom random = new SplittableRandom(n);
+        for (int i = 0; i < n; i++){
+            // 0 has a place of its own in the table, so it is left out to time only the cuckoo inserts
+            do {
+                keys[i] = random.nextInt();
+            } while (keys[i] == 0);
+        }
+
+        for (boolean incremental : new boolean[] {false, true}){
+            for (int round = 0; round < WARM_UP_ROUNDS; round++){
+                fill(keys, incremental, new long[n]);
+            }
+        }
+
+        System.out.printf("%12s %10s %10s %10s %10s %10s %12s%n", "resize", "mean", "p50", "p99", "p99.9", "p99.99",
+                "max");
+        for (boolean incremental : new boolean[] {false, true}){
+            long[] times = new long[n * rounds];
+            long[] round = new long[n];
+            for (int r = 0; r < rounds; r++){
+                fill(keys, incremental, round);
+                System.arraycopy(round, 0, times, r * n, n);
+            }
+            Arrays.sort(times);
+
+            double mean = 0;
+            for (long time : times){
+                mean += time;
+            }
+            mean /= times.length;
+            System.out.printf("%12s %7.0f ns %7d ns %7d ns %7d ns %7d ns %9d ns%n",
+                    incremental ? "incremental" : "all at once", mean, percentile(times, .5),
+                    percentile(times, .99), percentile(times, .999), percentile(times, .9999),
+                    times[times.length - 1]);
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Inserts every key into a new table and times each insert on its own
+     * @param keys the keys to insert
+     * @param incremental whether the table is resized incrementally
+     * @param times where the time of each insert is written, in nanoseconds
+     */
+    private static void fill(int[] keys, boolean incremental, long[] times) {
+        intHashTable table = new intHashTable(INITIAL_SIZE, incremental);
+        for (int i = 0; i < keys.length; i++){
+            long begin = System.nanoTime();
+            table.insert(keys[i]);
+            times[i] = System.nanoTime() - begin;
+        }
+        if (table.size() != keys.length && !allFound(table, keys)){
+            throw new IllegalStateException("the table holds " + table.size() + " keys");
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Random keys can repeat, so a table smaller than the number of keys is only wrong if one of them is missing
+     * @return true if every key is in the table
+     */
+    private static boolean allFound(intHashTable table, int[] keys) {
+        for (int key : keys){
+            if (!table.search(key)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) Math.ceil(p * sorted.length) - 1)];
+    }
+
+}
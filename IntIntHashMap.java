@@ -0,0 +1,533 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * @author Samuel Bernheim
+ * This is a map from int keys to int values which works like intHashTable, using cuckoo hashing with two seeded hash
+ * functions and a small stash, but keeps the keys and the values in two flat parallel arrays. Nothing is boxed and
+ * nothing is allocated except when the table grows. Each key can live in one of two buckets of four slots, which lets
+ * the table fill up to MAX_LOAD before it has to grow, and a lookup never looks at more than those eight slots and the
+ * stash. As in intHashTable a key of 0 marks an empty slot, so the key 0 is kept in a place of its own.
+ */
+
+public class IntIntHashMap {
+
+    private static final int BUCKET_SIZE = 4;
+    // the longest chain of evictions an insertion follows before it gives up and uses the stash
+    private static final int MAX_KICKS = 128;
+    // the number of entries which can be kept aside when they could not be placed in either of their buckets
+    private static final int STASH_SIZE = 4;
+    // with buckets of four slots, cuckoo hashing keeps finding room for new keys until the table is about this full
+    private static final double MAX_LOAD = .85;
+    // the most buckets a table can have, which keeps the number of slots a power of two that fits in an int
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    private int[] keys;
+    private int[] values;
+    private int bucketMask;
+    private int seedOne;
+    private int seedTwo;
+    private final int[] stashKeys = new int[STASH_SIZE];
+    private final int[] stashValues = new int[STASH_SIZE];
+    private int stashCount = 0;
+    private boolean hasZeroKey = false;
+    private int zeroValue;
+    private int numOfElements = 0;
+    // the entry left without a slot when place fails
+    private int homelessKey;
+    private int homelessValue;
+    // state of the xorshift generator which picks seeds and the entries to evict, started differently for every map
+    // so the keys which collide in one map cannot be worked out in advance, and never 0, which xorshift cannot leave
+    private int randomState = ThreadLocalRandom.current().nextInt() | 1;
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * The expected size only decides how many entries fit before the table has to grow.
+     */
+    public IntIntHashMap(int expectedSize) {
+        if (expectedSize > (long) MAX_BUCKETS * BUCKET_SIZE * MAX_LOAD){
+            throw new IllegalArgumentException("A map cannot be made for more than "
+                    + (long) (MAX_BUCKETS * BUCKET_SIZE * MAX_LOAD) + " entries");
+        }
+
+        int buckets = 2;
+        while ((long) buckets * BUCKET_SIZE * MAX_LOAD < expectedSize){
+            buckets *= 2;
+        }
+        allocate(buckets);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the number of entries in the map
+     * @return an int representing the number of entries in the map
+     */
+    public int size() {
+        return this.numOfElements;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Determines if the map contains any entries.
+     * @return true or false
+     */
+    public boolean isEmpty() {
+        return this.numOfElements == 0;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Determines if the map has an entry for the key
+     * @param key is the key which is being searched for
+     * @return true or false if the key is in the map or not
+     */
+    public boolean containsKey(int key) {
+        if (key == 0){
+            return hasZeroKey;
+        }
+        return slotOf(key) >= 0 || stashIndexOf(key) >= 0;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the value of a key, where a missing key counts as 0
+     * @param key is the key whose value is wanted
+     * @return the value of the key or 0 if it is not in the map
+     */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the value of a key
+     * @param key is the key whose value is wanted
+     * @param defaultValue is returned when the key is not in the map
+     * @return the value of the key or defaultValue if it is not in the map
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0){
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+
+        int slot = slotOf(key);
+        if (slot >= 0){
+            return values[slot];
+        }
+
+        int index = stashIndexOf(key);
+        return index >= 0 ? stashValues[index] : defaultValue;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Sets the value of a key, adding the key to the map if it is not in it yet
+     * @param key is the key whose value is set
+     * @param value is the new value of the key
+     * @return the previous value of the key or 0 if it was not in the map
+     */
+    public int put(int key, int value) {
+        if (key == 0){
+            int previous = hasZeroKey ? zeroValue : 0;
+            if (!hasZeroKey){
+                hasZeroKey = true;
+                numOfElements++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+
+        int slot = slotOf(key);
+        if (slot >= 0){
+            int previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+
+        int index = stashIndexOf(key);
+        if (index >= 0){
+            int previous = stashValues[index];
+            stashValues[index] = value;
+            return previous;
+        }
+
+        insertNew(key, value);
+        return 0;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Adds to the value of a key, where a missing key starts out at 0, which makes the map work as a set of counters
+     * @param key is the key whose value is increased
+     * @param delta is the amount added to the value
+     * @return the new value of the key
+     */
+    public int addTo(int key, int delta) {
+        if (key == 0){
+            if (!hasZeroKey){
+                hasZeroKey = true;
+                numOfElements++;
+                zeroValue = 0;
+            }
+            return zeroValue += delta;
+        }
+
+        int slot = slotOf(key);
+        if (slot >= 0){
+            return values[slot] += delta;
+        }
+
+        int index = stashIndexOf(key);
+        if (index >= 0){
+            return stashValues[index] += delta;
+        }
+
+        insertNew(key, delta);
+        return delta;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Sets the value of a missing key to value, or combines the current value of a key with value
+     * @param key is the key whose value is merged
+     * @param value is the value merged into the map
+     * @param function combines the current value with value
+     * @return the new value of the key
+     */
+    public int merge(int key, int value, IntBinaryOperator function) {
+        if (key == 0){
+            if (!hasZeroKey){
+                hasZeroKey = true;
+                numOfElements++;
+                return zeroValue = value;
+            }
+            return zeroValue = function.applyAsInt(zeroValue, value);
+        }
+
+        int slot = slotOf(key);
+        if (slot >= 0){
+            return values[slot] = function.applyAsInt(values[slot], value);
+        }
+
+        int index = stashIndexOf(key);
+        if (index >= 0){
+            return stashValues[index] = function.applyAsInt(stashValues[index], value);
+        }
+
+        insertNew(key, value);
+        return value;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Removes a key and its value from the map
+     * @param key is the key which will be removed
+     * @return the value the key had or 0 if it was not in the map
+     */
+    public int remove(int key) {
+        if (key == 0){
+            if (!hasZeroKey){
+                return 0;
+            }
+            hasZeroKey = false;
+            numOfElements--;
+            return zeroValue;
+        }
+
+        int slot = slotOf(key);
+        if (slot >= 0){
+            keys[slot] = 0;
+            numOfElements--;
+            return values[slot];
+        }
+
+        int index = stashIndexOf(key);
+        if (index < 0){
+            return 0;
+        }
+
+        int previous = stashValues[index];
+        stashCount--;
+        stashKeys[index] = stashKeys[stashCount];
+        stashValues[index] = stashValues[stashCount];
+        stashKeys[stashCount] = 0;
+        numOfElements--;
+        return previous;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Hands every entry of the map to the action, in no particular order
+     * @param action the action performed on each key and value
+     */
+    public void forEach(IntIntConsumer action) {
+        if (hasZeroKey){
+            action.accept(0, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++){
+            if (keys[slot] != 0){
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+        for (int i = 0; i < stashCount; i++){
+            action.accept(stashKeys[i], stashValues[i]);
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Looks for a key in the slots of its two buckets
+     * @param key is the key which is being searched for
+     * @return the slot holding the key or -1 if it is not in either bucket
+     */
+    private int slotOf(int key) {
+        int one = bucketOne(key) * BUCKET_SIZE;
+        for (int slot = one; slot < one + BUCKET_SIZE; slot++){
+            if (keys[slot] == key){
+                return slot;
+            }
+        }
+
+        int two = bucketTwo(key) * BUCKET_SIZE;
+        for (int slot = two; slot < two + BUCKET_SIZE; slot++){
+            if (keys[slot] == key){
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Running Time --> O(STASH_SIZE)
+     * Looks for a key in the stash
+     * @param key is the key which is being searched for
+     * @return the index of the key in the stash or -1 if it is not there
+     */
+    private int stashIndexOf(int key) {
+        for (int i = 0; i < stashCount; i++){
+            if (stashKeys[i] == key){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Adds a key which is not in the map yet, growing the table first if it is full enough
+     * @param key is the key which will be added
+     * @param value is the value of the key
+     */
+    private void insertNew(int key, int value) {
+        if (numOfElements + 1 > keys.length * MAX_LOAD){
+            rehash(doubled(keys.length / BUCKET_SIZE));
+        }
+
+        numOfElements++;
+        while (!place(key, value)){
+            // the chain of evictions failed and the stash is full, so the last evicted entry is still homeless
+            key = homelessKey;
+            value = homelessValue;
+            rehash(doubled(keys.length / BUCKET_SIZE));
+        }
+    }
+
+    /**
+     * Running Time --> O(MAX_KICKS)
+     * Places an entry into a free slot of one of its two buckets. If both are full the entry takes a slot of one of
+     * them anyway and the entry it evicts moves to its own other bucket, and so on for at most MAX_KICKS evictions,
+     * after which the entry left over goes into the stash.
+     * @param key is the key of the entry
+     * @param value is the value of the entry
+     * @return true if every entry found a place, or false if the stash was full and the entry in homelessKey and
+     * homelessValue was left without one
+     */
+    private boolean place(int key, int value) {
+        int bucket = bucketOne(key);
+        if (placeInBucket(bucket, key, value) || placeInBucket(bucketTwo(key), key, value)){
+            return true;
+        }
+
+        for (int kick = 0; kick < MAX_KICKS; kick++){
+            // evict a random entry of the bucket and send it to its other bucket
+            int slot = bucket * BUCKET_SIZE + (nextRandom() & (BUCKET_SIZE - 1));
+            int evictedKey = keys[slot];
+            int evictedValue = values[slot];
+            keys[slot] = key;
+            values[slot] = value;
+            key = evictedKey;
+            value = evictedValue;
+
+            int one = bucketOne(key);
+            bucket = one == bucket ? bucketTwo(key) : one;
+            if (placeInBucket(bucket, key, value)){
+                return true;
+            }
+        }
+
+        if (stashCount < STASH_SIZE){
+            stashKeys[stashCount] = key;
+            stashValues[stashCount] = value;
+            stashCount++;
+            return true;
+        }
+
+        homelessKey = key;
+        homelessValue = value;
+        return false;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Puts an entry into the first free slot of a bucket
+     * @param bucket is the bucket to use
+     * @param key is the key of the entry
+     * @param value is the value of the entry
+     * @return true if the bucket had a free slot
+     */
+    private boolean placeInBucket(int bucket, int key, int value) {
+        int start = bucket * BUCKET_SIZE;
+        for (int slot = start; slot < start + BUCKET_SIZE; slot++){
+            if (keys[slot] == 0){
+                keys[slot] = key;
+                values[slot] = value;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Moves every entry into a new table with the given number of buckets and new seeds. If an entry cannot be placed
+     * the new table is built again with other seeds, and after a few failures with twice as many buckets. The entry
+     * which was homeless when the rehash started is kept in homelessKey and homelessValue and is placed afterwards by
+     * the caller.
+     * @param buckets is the number of buckets of the new table
+     */
+    private void rehash(int buckets) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldStashKeys = stashKeys.clone();
+        int[] oldStashValues = stashValues.clone();
+        int oldStashCount = stashCount;
+
+        for (int attempt = 1; ; attempt++){
+            allocate(buckets);
+            if (placeAll(oldKeys, oldValues, oldKeys.length) && placeAll(oldStashKeys, oldStashValues, oldStashCount)){
+                return;
+            }
+
+            if (attempt % 8 == 0){
+                buckets = doubled(buckets);
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives twice a number of buckets, as long as the table can still have that many
+     * @param buckets is the current number of buckets
+     * @return the doubled number of buckets
+     */
+    private static int doubled(int buckets) {
+        if (buckets >= MAX_BUCKETS){
+            throw new IllegalStateException("The map cannot hold any more entries");
+        }
+        return 2 * buckets;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Places the entries of a pair of key and value arrays into the table
+     * @param keys is the array of keys, where 0 marks an empty slot
+     * @param values is the array of values
+     * @param count is the number of slots to read from the arrays
+     * @return true if every entry found a place
+     */
+    private boolean placeAll(int[] keys, int[] values, int count) {
+        for (int i = 0; i < count; i++){
+            if (keys[i] != 0 && !place(keys[i], values[i])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Replaces the table with an empty one of the given number of buckets and picks new seeds
+     * @param buckets is the number of buckets, a power of two
+     */
+    private void allocate(int buckets) {
+        keys = new int[buckets * BUCKET_SIZE];
+        values = new int[buckets * BUCKET_SIZE];
+        bucketMask = buckets - 1;
+        seedOne = nextRandom();
+        seedTwo = nextRandom();
+        stashCount = 0;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the first bucket a key can live in
+     * @param key is the key
+     * @return the index of the bucket
+     */
+    private int bucketOne(int key) {
+        return mix(key ^ seedOne) & bucketMask;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the second bucket a key can live in
+     * @param key is the key
+     * @return the index of the bucket
+     */
+    private int bucketTwo(int key) {
+        return mix(key ^ seedTwo) & bucketMask;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Scrambles the bits of a value with the murmur3 finalizer
+     * @param x is the value to scramble
+     * @return the scrambled value
+     */
+    private static int mix(int x) {
+        x ^= x >>> 16;
+        x *= 0x85EBCA6B;
+        x ^= x >>> 13;
+        x *= 0xC2B2AE35;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Steps the xorshift generator
+     * @return the next pseudo random value
+     */
+    private int nextRandom() {
+        int x = randomState;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        return randomState = x;
+    }
+
+    /**
+     * An action performed on a key and its value.
+     */
+    public interface IntIntConsumer {
+
+        /**
+         * @param key the key of the entry
+         * @param value the value of the entry
+         */
+        void accept(int key, int value);
+    }
+}
@@ -0,0 +1,281 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Samuel Bernheim
+ * This is a linked list which keeps up to CHUNK_SIZE elements in an array in each of its nodes instead of one element
+ * per node. A scan walks through the arrays element by element and only follows a link once per chunk, and the links
+ * and headers are shared by a whole chunk instead of paid for by every element. A full chunk is split in two when an
+ * element is added to it, and a chunk which drops below half full after a removal is merged with its neighbour if they
+ * fit into one chunk together, so every pair of neighbouring chunks is more than half full.
+ */
+
+public class UnrolledLinkedList<E> implements Iterable<E> {
+
+    private static final int CHUNK_SIZE = 64;
+
+    private int size;
+    private Chunk head;
+    private Chunk tail;
+    // set by chunkOf to the position of the index it looked up within its chunk
+    private int offset;
+
+    public UnrolledLinkedList(){
+
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * Adds an element to the end of the list
+     * @param data the element which will be added
+     */
+    public void add(E data){
+        if (tail == null){
+            head = tail = new Chunk();
+        } else if (tail.count == CHUNK_SIZE){
+            // appending fills the chunks completely instead of splitting the last one in half
+            Chunk chunk = new Chunk();
+            linkAfter(tail, chunk);
+        }
+        tail.items[tail.count++] = data;
+        size++;
+    }
+
+    /**
+     * Running Time --> O(n / CHUNK_SIZE + CHUNK_SIZE)
+     * Adds an element at an index, shifting the elements after it within its chunk
+     * @param index the index the element will have
+     * @param data the element which will be added
+     */
+    public void add(int index, E data){
+        if (index < 0 || index > size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index == size){
+            add(data);
+            return;
+        }
+
+        Chunk chunk = chunkOf(index);
+        int offset = this.offset;
+        if (chunk.count == CHUNK_SIZE){
+            // split the full chunk in half and add to whichever half the index falls into
+            Chunk second = new Chunk();
+            int half = CHUNK_SIZE / 2;
+            System.arraycopy(chunk.items, half, second.items, 0, CHUNK_SIZE - half);
+            Arrays.fill(chunk.items, half, CHUNK_SIZE, null);
+            second.count = CHUNK_SIZE - half;
+            chunk.count = half;
+            linkAfter(chunk, second);
+
+            if (offset > half){
+                chunk = second;
+                offset -= half;
+            }
+        }
+
+        System.arraycopy(chunk.items, offset, chunk.items, offset + 1, chunk.count - offset);
+        chunk.items[offset] = data;
+        chunk.count++;
+        size++;
+    }
+
+    /**
+     * Running Time --> O(n / CHUNK_SIZE + CHUNK_SIZE)
+     * Gets the element at an index
+     * @param index the index of the element
+     * @return the element at the index
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index){
+        if (index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Chunk chunk = chunkOf(index);
+        return (E) chunk.items[offset];
+    }
+
+    /**
+     * Running Time --> O(CHUNK_SIZE)
+     * Removes the first element of the list
+     * @return the element which was removed
+     */
+    public E remove(){
+        if (size == 0){
+            throw new NoSuchElementException("The list is empty");
+        }
+        return remove(0);
+    }
+
+    /**
+     * Running Time --> O(n / CHUNK_SIZE + CHUNK_SIZE)
+     * Removes the element at an index, shifting the elements after it within its chunk and merging the chunk with a
+     * neighbour if it is less than half full and they fit into one chunk
+     * @param index the index of the element which will be removed
+     * @return the element which was removed
+     */
+    @SuppressWarnings("unchecked")
+    public E remove(int index){
+        if (index < 0 || index >= size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        Chunk chunk = chunkOf(index);
+        E removed = (E) chunk.items[offset];
+        System.arraycopy(chunk.items, offset + 1, chunk.items, offset, chunk.count - offset - 1);
+        chunk.items[--chunk.count] = null;
+        size--;
+
+        if (chunk.count == 0){
+            unlink(chunk);
+        } else if (chunk.count < CHUNK_SIZE / 2){
+            if (chunk.next != null && chunk.count + chunk.next.count <= CHUNK_SIZE){
+                merge(chunk, chunk.next);
+            } else if (chunk.prev != null && chunk.prev.count + chunk.count <= CHUNK_SIZE){
+                merge(chunk.prev, chunk);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * @return the number of elements in the list
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Prints the elements of the list in order
+     */
+    public void printInfo(){
+        StringBuilder sb = new StringBuilder("[");
+        for (E data : this){
+            if (sb.length() > 1){
+                sb.append(", ");
+            }
+            sb.append(data);
+        }
+        System.out.println(sb.append("]"));
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Returns an iterator over the elements of the list in order
+     * @return an iterator over the list
+     */
+    public Iterator<E> iterator(){
+        return new Iterator<E>() {
+            private Chunk chunk = head;
+            private int i = 0;
+
+            public boolean hasNext(){
+                return chunk != null && i < chunk.count;
+            }
+
+            @SuppressWarnings("unchecked")
+            public E next(){
+                if (!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                E data = (E) chunk.items[i++];
+                if (i == chunk.count){
+                    chunk = chunk.next;
+                    i = 0;
+                }
+                return data;
+            }
+        };
+    }
+
+    /**
+     * Running Time --> O(n / CHUNK_SIZE)
+     * Finds the chunk holding an index, walking from whichever end of the list is closer, and leaves the position of
+     * the index within the chunk in offset
+     * @param index an index of the list
+     * @return the chunk holding the index
+     */
+    private Chunk chunkOf(int index){
+        if (index < size / 2){
+            Chunk chunk = head;
+            while (index >= chunk.count){
+                index -= chunk.count;
+                chunk = chunk.next;
+            }
+            offset = index;
+            return chunk;
+        }
+
+        Chunk chunk = tail;
+        int start = size - chunk.count;
+        while (index < start){
+            chunk = chunk.prev;
+            start -= chunk.count;
+        }
+        offset = index - start;
+        return chunk;
+    }
+
+    /**
+     * Running Time --> O(CHUNK_SIZE)
+     * Moves the elements of a chunk to the end of the chunk before it and unlinks the emptied chunk
+     * @param first the chunk which keeps the elements
+     * @param second the chunk right after it which is removed
+     */
+    private void merge(Chunk first, Chunk second){
+        System.arraycopy(second.items, 0, first.items, first.count, second.count);
+        first.count += second.count;
+        unlink(second);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Links a new chunk into the list right after another one
+     * @param pred the chunk the new chunk follows
+     * @param chunk the new chunk
+     */
+    private void linkAfter(Chunk pred, Chunk chunk){
+        chunk.prev = pred;
+        chunk.next = pred.next;
+        if (pred.next == null){
+            tail = chunk;
+        } else {
+            pred.next.prev = chunk;
+        }
+        pred.next = chunk;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Takes a chunk out of the list
+     * @param chunk the chunk which is removed
+     */
+    private void unlink(Chunk chunk){
+        if (chunk.prev == null){
+            head = chunk.next;
+        } else {
+            chunk.prev.next = chunk.next;
+        }
+        if (chunk.next == null){
+            tail = chunk.prev;
+        } else {
+            chunk.next.prev = chunk.prev;
+        }
+        chunk.prev = null;
+        chunk.next = null;
+    }
+
+    /**
+     * A node of the list holding up to CHUNK_SIZE elements in order at the start of its array.
+     */
+    private static final class Chunk {
+        final Object[] items = new Object[CHUNK_SIZE];
+        int count;
+        Chunk prev;
+        Chunk next;
+    }
+
+}
@@ -0,0 +1,350 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * @author Samuel Bernheim
+ * This is a Binary Search AVL type tree specialized for long keys. Instead of one object per node, the nodes are ids
+ * into parallel arrays holding the keys, the left and right children and the heights, so the keys are never boxed and
+ * the whole tree lives in a handful of arrays. Node id 0 is reserved for the empty subtree.
+ */
+
+public class LongAvlTree {
+
+    private static final int NIL = 0;
+
+    private long[] keys;
+    private int[] left;
+    private int[] right;
+    // height of the subtree rooted at each node, a leaf has a height of 1 and the empty subtree NIL has 0
+    private byte[] height;
+
+    private int root = NIL;
+    private int size;
+    // ids below this one have been handed out, freed ids are chained through the left array
+    private int nextId = 1;
+    private int freeList = NIL;
+    // set by the recursive insert and delete when they changed the tree
+    private boolean modified;
+
+    public LongAvlTree() {
+        this(16);
+    }
+
+    /**
+     * The initial capacity only decides how many nodes fit before the arrays have to grow.
+     */
+    public LongAvlTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1) + 1;
+        keys = new long[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        height = new byte[capacity];
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the number of keys in the tree
+     * @return an integer representing the number of keys in the tree
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Determines if the tree contains any keys.
+     * @return true or false
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Searches the tree for a key
+     * @param key the key the user is searching for
+     * @return true or false if the key is in the tree or not
+     */
+    public boolean search(long key) {
+        int node = root;
+        while (node != NIL){
+            if (key < keys[node]){
+                node = left[node];
+            } else if (key > keys[node]){
+                node = right[node];
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the smallest key in the tree
+     * @return the minimum key
+     */
+    public long findMin() {
+        if (root == NIL){
+            throw new NoSuchElementException("The tree is empty");
+        }
+
+        int node = root;
+        while (left[node] != NIL){
+            node = left[node];
+        }
+        return keys[node];
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the largest key in the tree
+     * @return the maximum key
+     */
+    public long findMax() {
+        if (root == NIL){
+            throw new NoSuchElementException("The tree is empty");
+        }
+
+        int node = root;
+        while (right[node] != NIL){
+            node = right[node];
+        }
+        return keys[node];
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Inserts a key into the tree while maintaining the BST AVL properties.
+     * @param key the key which will be inserted into the tree
+     * @return true if the key was inserted or false if it was already in the tree
+     */
+    public boolean insert(long key) {
+        modified = false;
+        root = insert(root, key);
+        return modified;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Deletes a key from the tree while preserving the BST AVL properties
+     * @param key the key which will be deleted from the tree
+     * @return true if the key was deleted or false if it was not in the tree
+     */
+    public boolean delete(long key) {
+        modified = false;
+        root = delete(root, key);
+        return modified;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Hands every key in the tree to the action in ascending order, using a small stack of node ids instead of
+     * recursion and without boxing the keys
+     * @param action the action performed on each key
+     */
+    public void forEach(LongConsumer action) {
+        int[] stack = new int[height[root] + 1];
+        int top = 0;
+        int node = root;
+        while (node != NIL || top > 0){
+            while (node != NIL){
+                stack[top++] = node;
+                node = left[node];
+            }
+            node = stack[--top];
+            action.accept(keys[node]);
+            node = right[node];
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Copies the keys of the tree in ascending order into a new array
+     * @return an array holding every key of the tree
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int[] index = new int[1];
+        forEach(key -> result[index[0]++] = key);
+        return result;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Inserts a key into the subtree and rebalances every node on the way back up
+     * @param node the root of the subtree
+     * @param key the key which will be inserted
+     * @return the root of the subtree after the insertion
+     */
+    private int insert(int node, long key) {
+        if (node == NIL){
+            modified = true;
+            size++;
+            return newNode(key);
+        }
+
+        // the arrays may grow during the recursive call, so the child is only stored once the call has returned
+        if (key < keys[node]){
+            int child = insert(left[node], key);
+            left[node] = child;
+        } else if (key > keys[node]){
+            int child = insert(right[node], key);
+            right[node] = child;
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Deletes a key from the subtree and rebalances every node on the way back up
+     * @param node the root of the subtree
+     * @param key the key which will be deleted
+     * @return the root of the subtree after the deletion
+     */
+    private int delete(int node, long key) {
+        if (node == NIL){
+            return NIL;
+        }
+
+        if (key < keys[node]){
+            left[node] = delete(left[node], key);
+        } else if (key > keys[node]){
+            right[node] = delete(right[node], key);
+        } else if (left[node] == NIL || right[node] == NIL){
+            int child = left[node] == NIL ? right[node] : left[node];
+            freeNode(node);
+            modified = true;
+            size--;
+            return child;
+        } else {
+            // Two Children: the successor's key takes the place of the deleted key and is deleted from the right
+            int successor = right[node];
+            while (left[successor] != NIL){
+                successor = left[successor];
+            }
+            keys[node] = keys[successor];
+            right[node] = delete(right[node], keys[successor]);
+        }
+        return balance(node);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Fixes the height of a node and balances it through single left, single right or a double rotation if needed
+     * @param node the node to balance
+     * @return the root of the balanced subtree
+     */
+    private int balance(int node) {
+        update(node);
+        int balanceFactor = height[left[node]] - height[right[node]];
+
+        if (balanceFactor < -1){
+            int r = right[node];
+            if (height[left[r]] > height[right[r]]){
+                right[node] = rightRotation(r);
+            }
+            return leftRotation(node);
+        } else if (balanceFactor > 1){
+            int l = left[node];
+            if (height[right[l]] > height[left[l]]){
+                left[node] = leftRotation(l);
+            }
+            return rightRotation(node);
+        }
+        return node;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Performs a right rotation on a subtree
+     * @param node the root of the subtree
+     * @return the new root of the subtree
+     */
+    private int rightRotation(int node) {
+        int w = left[node];
+        left[node] = right[w];
+        right[w] = node;
+        update(node);
+        update(w);
+        return w;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Performs a left rotation on a subtree
+     * @param node the root of the subtree
+     * @return the new root of the subtree
+     */
+    private int leftRotation(int node) {
+        int v = right[node];
+        right[node] = left[v];
+        left[v] = node;
+        update(node);
+        update(v);
+        return v;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Recomputes the height of a node from the heights of its children
+     * @param node the node whose height is fixed
+     */
+    private void update(int node) {
+        height[node] = (byte) (1 + Math.max(height[left[node]], height[right[node]]));
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * Hands out the id of a new leaf holding the key, reusing a freed id if there is one
+     * @param key the key of the new node
+     * @return the id of the new node
+     */
+    private int newNode(long key) {
+        int node;
+        if (freeList != NIL){
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (nextId == keys.length){
+                grow();
+            }
+            node = nextId++;
+        }
+
+        keys[node] = key;
+        left[node] = NIL;
+        right[node] = NIL;
+        height[node] = 1;
+        return node;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Puts the id of a deleted node on the free list so the next insertion can reuse it
+     * @param node the id of the deleted node
+     */
+    private void freeNode(int node) {
+        left[node] = freeList;
+        freeList = node;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Doubles the capacity of the node arrays
+     */
+    private void grow() {
+        int capacity = keys.length * 2;
+        if (capacity < 0){
+            throw new IllegalStateException("The tree cannot hold any more keys");
+        }
+
+        keys = Arrays.copyOf(keys, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        height = Arrays.copyOf(height, capacity);
+    }
+}
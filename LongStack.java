@@ -0,0 +1,168 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This is a version of Stack specialized for long values. The elements are kept in a plain long[] so pushing and
+ * popping never boxes them, which matters when the stack holds millions of node ids during an iterative graph search.
+ * The array doubles when it is full and halves when it is only a quarter full.
+ */
+
+
+import java.util.Arrays;
+
+public class LongStack {
+
+    // the longest array every JVM can allocate, a few words short of Integer.MAX_VALUE for the array header
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    // top is used to keep track of the index of the most recent element that was pushed into the array
+    private int top = -1;
+    // the capacity the stack starts with and never shrinks below
+    private final int totalCapacity;
+    // this array is used as the stack
+    private long[] array;
+
+
+    /**
+     * The initial capacity only decides how many elements fit before the array has to grow.
+     */
+    public LongStack (int initialCapacity) {
+        this.totalCapacity = Math.max(initialCapacity, 1);
+        this.array = new long[totalCapacity];
+    }
+
+    /**
+     * The default constructor.
+     */
+    public LongStack () {
+        this(100);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * A method which lets the user know if the stack is empty
+     * @return true if the stack is empty or false if it is not.
+     */
+    public boolean isEmpty() {
+        return top == -1;
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * Adds an element to the proper place in the stack, doubling the array first if there is no room
+     * @param x is the element to be inserted
+     */
+    public void push(long x){
+        if (top + 1 == array.length){
+            grow(top + 2L);
+        }
+        array[top+1] = x;
+        top++;
+    }
+
+    /**
+     * Running Time --> O(k) amortized
+     * Pushes every element of an array in order, so the last one ends up on top. The array of the stack grows at most
+     * once.
+     * @param elements are the elements to be inserted
+     */
+    public void pushAll(long[] elements){
+        long needed = top + 1L + elements.length;
+        if (needed > array.length){
+            grow(needed);
+        }
+        System.arraycopy(elements, 0, array, top + 1, elements.length);
+        top += elements.length;
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * A method which will remove an element from the stack based on LIFO ordering. The array is halved once it is only
+     * a quarter full.
+     */
+    public long pop(){
+        if (isEmpty()) {
+            throw new IndexOutOfBoundsException("No Elements Left to Pop");
+        }
+        long temp = array[top];
+        top--;
+        shrink();
+        return temp;
+    }
+
+    /**
+     * Running Time --> O(k) amortized
+     * Pops elements into an array until either the array is full or the stack is empty. The first element of the
+     * array is the one which was on top.
+     * @param destination is the array the popped elements are written into
+     * @return the number of elements which were popped
+     */
+    public int popInto(long[] destination){
+        int count = Math.min(destination.length, top + 1);
+        for (int i = 0; i < count; i++){
+            destination[i] = array[top - i];
+        }
+        top -= count;
+        shrink();
+        return count;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * @return the size of the stack.
+     */
+    public int size(){
+        return top+1;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * @return A string representation of the stack, from the bottom to the top.
+     */
+    public String toString(){
+        return Arrays.toString(Arrays.copyOf(array, top + 1));
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * Halves the array while it is at most a quarter full, but never below the initial capacity
+     */
+    private void shrink(){
+        int capacity = array.length;
+        while (capacity / 2 >= totalCapacity && top + 1 <= capacity / 4){
+            capacity /= 2;
+        }
+        if (capacity != array.length){
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Doubles the array until it can hold a number of elements. The doubling is worked out in a long so it cannot
+     * overflow, and stops at MAX_CAPACITY.
+     * @param needed is the number of elements the array has to hold
+     */
+    private void grow(long needed){
+        if (needed > MAX_CAPACITY){
+            throw new IllegalStateException("The Stack cannot hold any more elements");
+        }
+        long capacity = array.length;
+        while (capacity < needed){
+            capacity *= 2;
+        }
+        resize((int) Math.min(capacity, MAX_CAPACITY));
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Moves the elements into an array of a new capacity
+     * @param capacity is the length of the new array
+     */
+    private void resize(int capacity){
+        if (capacity < 0 || capacity > MAX_CAPACITY){
+            throw new IllegalStateException("The Stack cannot hold any more elements");
+        }
+        array = Arrays.copyOf(array, capacity);
+    }
+
+}
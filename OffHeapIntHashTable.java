@@ -0,0 +1,362 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author Samuel Bernheim
+ * This is a hash table of ints which lives in a file instead of on the heap. The file is mapped into memory in
+ * regions of 1GB, so the table can have more than 2^31 slots and the garbage collector never sees any of it. Slots are
+ * addressed with long indices and use linear probing, with 0 marking an empty slot and the element 0 kept as a flag
+ * in the header. The header also holds the capacity and the number of elements, so opening an existing file only has
+ * to map it again and the table is ready right away, without rehashing anything.
+ *
+ * Changes reach the file whenever the operating system writes the mapped pages back, and force writes them all out.
+ * A table which was not closed properly may have lost changes which were not forced.
+ */
+
+public class OffHeapIntHashTable implements Closeable {
+
+    // "INTHASH1" in ASCII, written at the start of the file to recognize it when it is opened again
+    private static final long MAGIC = 0x494E544841534831L;
+    private static final int HEADER = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int ZERO_OFFSET = 24;
+    // every region but the last one maps 2^30 bytes, a multiple of the slot size so no slot is split between regions
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+    // linear probing stays fast until the table is about this full
+    private static final double MAX_LOAD = .7;
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer[] regions;
+    private long capacity;
+    private long mask;
+    private long numOfElements;
+    private boolean hasZero;
+
+    /**
+     * Opens the table stored in a file, or creates a new one in it if the file does not exist or is empty. An
+     * existing table keeps its own capacity, tableSize is only used for a new one.
+     * @param file is the file holding the table
+     * @param tableSize is the number of slots of a new table
+     * @throws IOException if the file cannot be read or written, or holds something other than a table, or a table
+     * whose file was cut short or grown past its slots
+     */
+    public OffHeapIntHashTable(Path file, long tableSize) throws IOException {
+        this.file = file;
+        long length = Files.exists(file) ? Files.size(file) : 0;
+        if (length > 0){
+            // a file shorter than the header would fail while the header is read, not with an IOException
+            if (length < HEADER){
+                throw new IOException(file + " is too short to hold a hash table");
+            }
+            map();
+            if (regions[0].getLong(MAGIC_OFFSET) != MAGIC){
+                close();
+                throw new IOException(file + " does not hold a hash table");
+            }
+
+            // the capacity has to be a power of two for the mask and has to match the length, or slots past the end
+            // of the file would be read
+            long slots = regions[0].getLong(CAPACITY_OFFSET);
+            if (slots <= 0 || Long.bitCount(slots) != 1 || slots > (Long.MAX_VALUE - HEADER) / 4
+                    || length != HEADER + 4 * slots){
+                close();
+                throw new IOException(file + " is " + length + " bytes long, which does not fit a table of " + slots
+                        + " slots");
+            }
+            this.capacity = slots;
+            this.mask = capacity - 1;
+            this.numOfElements = regions[0].getLong(SIZE_OFFSET);
+            this.hasZero = regions[0].get(ZERO_OFFSET) != 0;
+            return;
+        }
+
+        long slots = 16;
+        while (slots < tableSize){
+            slots *= 2;
+        }
+        create(file, slots);
+        map();
+        this.capacity = slots;
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the total number of elements the hash table can contain
+     * @return a long representing the total number of elements the hash table can contain
+     */
+    public long totalCapcity() {
+        return capacity;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the number of elements which have been inserted into the hash table
+     * @return a long representing the number of elements which have been inserted into the hash table
+     */
+    public long size() {
+        return this.numOfElements;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Inserts an element into the first empty slot along its probe sequence, unless it is already in the hash table.
+     * If the element is new and would make the table too full, the table doubles in size before it is placed.
+     * @param process is the element which will be inserted
+     * @throws IOException if the table has to grow and the new file cannot be written
+     */
+    public void insert(int process) throws IOException {
+        if (process == 0){
+            if (!hasZero){
+                hasZero = true;
+                regions[0].put(ZERO_OFFSET, (byte) 1);
+                setSize(numOfElements + 1);
+            }
+            return;
+        }
+
+        long slot = home(process);
+        for (int current = get(slot); current != 0; current = get(slot)){
+            if (current == process){
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // only an element which is really new can push the table past MAX_LOAD
+        if (numOfElements + 1 > capacity * MAX_LOAD){
+            grow();
+
+            // every element has moved, so the free slot is looked for again in the bigger table
+            slot = home(process);
+            while (get(slot) != 0){
+                slot = (slot + 1) & mask;
+            }
+        }
+        set(slot, process);
+        setSize(numOfElements + 1);
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Searches the hash table for a specific value
+     * @param process is the value which is being searched for in the hash table
+     * @return true or false if the value is found in the table or not
+     */
+    public boolean search(int process) {
+        if (process == 0){
+            return hasZero;
+        }
+        return find(process) >= 0;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Deletes a value from the hash table. The elements after it in the same run of full slots are shifted back to
+     * close the gap, so no slot is ever marked as deleted and searches never get slower.
+     * @param process is the value which is will be deleted from the hash table
+     */
+    public void delete(int process) {
+        if (process == 0){
+            if (hasZero){
+                hasZero = false;
+                regions[0].put(ZERO_OFFSET, (byte) 0);
+                setSize(numOfElements - 1);
+            }
+            return;
+        }
+
+        long gap = find(process);
+        if (gap < 0){
+            return;
+        }
+
+        long slot = gap;
+        while (true){
+            slot = (slot + 1) & mask;
+            int current = get(slot);
+            if (current == 0){
+                break;
+            }
+
+            // an element may fill the gap only if the gap lies between its home slot and its slot
+            long home = home(current);
+            if (((slot - home) & mask) >= ((slot - gap) & mask)){
+                set(gap, current);
+                gap = slot;
+            }
+        }
+        set(gap, 0);
+        setSize(numOfElements - 1);
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Writes every change made to the table out to the file
+     */
+    public void force() {
+        for (MappedByteBuffer region : regions){
+            region.force();
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Writes every change out to the file and closes it. The table cannot be used afterwards.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Finds the slot of an element which is not 0
+     * @param process is the element which is being searched for
+     * @return the slot of the element or -1 if it is not in the table
+     */
+    private long find(int process) {
+        long slot = home(process);
+        for (int current = get(slot); current != 0; current = get(slot)){
+            if (current == process){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Copies every element into a table twice the size in a file next to this one, then moves that file over this one
+     * and maps it in place of the old one
+     * @throws IOException if the new file cannot be written or moved
+     */
+    private void grow() throws IOException {
+        Path sibling = file.resolveSibling(file.getFileName() + ".resize");
+        Files.deleteIfExists(sibling);
+        try (OffHeapIntHashTable bigger = new OffHeapIntHashTable(sibling, 2 * capacity)){
+            if (hasZero){
+                bigger.insert(0);
+            }
+            for (long slot = 0; slot < capacity; slot++){
+                int current = get(slot);
+                if (current != 0){
+                    bigger.insert(current);
+                }
+            }
+        }
+
+        close();
+        Files.move(sibling, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map();
+        this.capacity = regions[0].getLong(CAPACITY_OFFSET);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Writes the header of a new, empty table with the given number of slots. The rest of the file reads as zeros,
+     * which are empty slots.
+     * @param file is the file to create
+     * @param slots is the number of slots, a power of two
+     * @throws IOException if the file cannot be written
+     */
+    private static void create(Path file, long slots) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            // writing the last byte sets the length of the file, which most file systems keep sparse until used
+            out.write(ByteBuffer.allocate(1), HEADER + 4 * slots - 1);
+            MappedByteBuffer header = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            header.putLong(MAGIC_OFFSET, MAGIC);
+            header.putLong(CAPACITY_OFFSET, slots);
+            header.force();
+        }
+    }
+
+    /**
+     * Running Time --> O(number of regions)
+     * Opens the file and maps it region by region
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    private void map() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size();
+        regions = new MappedByteBuffer[(int) ((length + REGION_MASK) >>> REGION_SHIFT)];
+        for (int i = 0; i < regions.length; i++){
+            long start = (long) i << REGION_SHIFT;
+            regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(REGION_MASK + 1, length - start));
+        }
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Reads the element in a slot
+     * @param slot is the index of the slot
+     * @return the element or 0 if the slot is empty
+     */
+    private int get(long slot) {
+        long offset = HEADER + 4 * slot;
+        return regions[(int) (offset >>> REGION_SHIFT)].getInt((int) (offset & REGION_MASK));
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Writes an element into a slot
+     * @param slot is the index of the slot
+     * @param process is the element, or 0 to empty the slot
+     */
+    private void set(long slot, int process) {
+        long offset = HEADER + 4 * slot;
+        regions[(int) (offset >>> REGION_SHIFT)].putInt((int) (offset & REGION_MASK), process);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Updates the number of elements both here and in the header
+     * @param size is the new number of elements
+     */
+    private void setSize(long size) {
+        numOfElements = size;
+        regions[0].putLong(SIZE_OFFSET, size);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the slot an element's probe sequence starts at
+     * @param process is the element
+     * @return the index of the slot
+     */
+    private long home(int process) {
+        return mix(process) & mask;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Scrambles the bits of a value with the 64 bit murmur3 finalizer, which gives enough bits to index a table with
+     * more than 2^32 slots
+     * @param x is the value to scramble
+     * @return the scrambled value
+     */
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xFF51AFD7ED558CCDL;
+        x ^= x >>> 33;
+        x *= 0xC4CEB9FE1A85EC53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
@@ -0,0 +1,332 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Samuel Bernheim
+ * This is a persistent version of the Binary Search AVL type tree. Its nodes are never changed once they are built:
+ * an insertion or deletion copies only the nodes on the path from the root to the change, O(log n) of them, and shares
+ * every other node with the tree as it was before. Because of this a snapshot of the tree is just a reference to its
+ * current root. Readers iterate over a snapshot without any locking while writers keep changing the tree, and taking a
+ * snapshot never copies anything.
+ */
+
+public class PersistentBinarySearchTree<E extends Comparable<E>> implements Iterable<E> {
+
+    private volatile Node<E> root;
+
+    public PersistentBinarySearchTree() {
+
+    }
+
+    private PersistentBinarySearchTree(Node<E> root) {
+        this.root = root;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Takes a snapshot of the tree as it is right now. Later changes to this tree do not show up in the snapshot, and
+     * changes made to the snapshot do not show up in this tree.
+     * @return a tree holding the same data as this tree
+     */
+    public PersistentBinarySearchTree<E> snapshot() {
+        return new PersistentBinarySearchTree<E>(root);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the number of elements in the tree
+     * @return an integer representing the number of elements in the tree
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Determines if the tree contains any elements.
+     * @return true or false
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Searches the tree for the data the user specifies
+     * @param e the data the user is searching for
+     * @return true or false if e is in the tree or not
+     */
+    public boolean search(E e) {
+        Node<E> curr = root;
+        while (curr != null){
+            int cmp = curr.data.compareTo(e);
+            if (cmp > 0){
+                curr = curr.left;
+            } else if (cmp < 0){
+                curr = curr.right;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the smallest data in the tree
+     * @return the minimum or null if the tree is empty
+     */
+    public E findMin() {
+        Node<E> curr = root;
+        if (curr == null){
+            return null;
+        }
+        while (curr.left != null){
+            curr = curr.left;
+        }
+        return curr.data;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Finds the largest data in the tree
+     * @return the maximum or null if the tree is empty
+     */
+    public E findMax() {
+        Node<E> curr = root;
+        if (curr == null){
+            return null;
+        }
+        while (curr.right != null){
+            curr = curr.right;
+        }
+        return curr.data;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Inserts e into the tree while maintaining the BST AVL properties. Only the path down to the new node is copied.
+     * @param e the data which will be inserted into the tree
+     * @return true if e was inserted or false if it was already in the tree
+     */
+    public synchronized boolean insert(E e) {
+        if (e == null){
+            throw new NullPointerException("A tree cannot hold null");
+        }
+
+        Node<E> newRoot = insert(root, e);
+        if (newRoot == root){
+            return false;
+        }
+        root = newRoot;
+        return true;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Deletes e from the tree while preserving the BST AVL properties. Only the path down to the deleted node is
+     * copied.
+     * @param e the data which will be deleted from the tree
+     * @return true if e was deleted or false if it was not in the tree
+     */
+    public synchronized boolean delete(E e) {
+        Node<E> newRoot = delete(root, e);
+        if (newRoot == root){
+            return false;
+        }
+        root = newRoot;
+        return true;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Returns an iterator over the data in the tree in ascending order. The iterator works on the tree as it was when
+     * the iterator was created, no matter what happens to the tree afterwards.
+     * @return an in order iterator over the tree
+     */
+    public Iterator<E> iterator() {
+        return new InOrderIterator<E>(root);
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Builds a copy of the subtree with e inserted into it
+     * @param node the root of the subtree
+     * @param e the data which will be inserted
+     * @return the root of the new subtree, or node itself if e was already in it
+     */
+    private static <E extends Comparable<E>> Node<E> insert(Node<E> node, E e) {
+        if (node == null){
+            return new Node<E>(null, e, null);
+        }
+
+        int cmp = e.compareTo(node.data);
+        if (cmp < 0){
+            Node<E> left = insert(node.left, e);
+            return left == node.left ? node : balance(left, node.data, node.right);
+        } else if (cmp > 0){
+            Node<E> right = insert(node.right, e);
+            return right == node.right ? node : balance(node.left, node.data, right);
+        }
+        return node;
+    }
+
+    /**
+     * Running Time --> O(log n)
+     * Builds a copy of the subtree with e deleted from it
+     * @param node the root of the subtree
+     * @param e the data which will be deleted
+     * @return the root of the new subtree, or node itself if e was not in it
+     */
+    private static <E extends Comparable<E>> Node<E> delete(Node<E> node, E e) {
+        if (node == null){
+            return null;
+        }
+
+        int cmp = e.compareTo(node.data);
+        if (cmp < 0){
+            Node<E> left = delete(node.left, e);
+            return left == node.left ? node : balance(left, node.data, node.right);
+        } else if (cmp > 0){
+            Node<E> right = delete(node.right, e);
+            return right == node.right ? node : balance(node.left, node.data, right);
+        } else if (node.left == null){
+            return node.right;
+        } else if (node.right == null){
+            return node.left;
+        }
+
+        // Two Children: the successor's data takes the place of the deleted data and is deleted from the right
+        Node<E> successor = node.right;
+        while (successor.left != null){
+            successor = successor.left;
+        }
+        return balance(node.left, successor.data, delete(node.right, successor.data));
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Builds a new node from its parts, using a single left, single right or a double rotation if the two subtrees
+     * differ in height by two. The rotations build new nodes as well rather than changing the existing ones.
+     * @param left the left subtree
+     * @param data the data of the node
+     * @param right the right subtree
+     * @return the root of the balanced subtree
+     */
+    private static <E extends Comparable<E>> Node<E> balance(Node<E> left, E data, Node<E> right) {
+        int balanceFactor = height(left) - height(right);
+
+        if (balanceFactor > 1){
+            if (height(left.left) >= height(left.right)){
+                // single right rotation
+                return new Node<E>(left.left, left.data, new Node<E>(left.right, data, right));
+            }
+            // double rotation through the right child of left
+            Node<E> pivot = left.right;
+            return new Node<E>(new Node<E>(left.left, left.data, pivot.left), pivot.data,
+                    new Node<E>(pivot.right, data, right));
+        } else if (balanceFactor < -1){
+            if (height(right.right) >= height(right.left)){
+                // single left rotation
+                return new Node<E>(new Node<E>(left, data, right.left), right.data, right.right);
+            }
+            // double rotation through the left child of right
+            Node<E> pivot = right.left;
+            return new Node<E>(new Node<E>(left, data, pivot.left), pivot.data,
+                    new Node<E>(pivot.right, right.data, right.right));
+        }
+        return new Node<E>(left, data, right);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the height of a possibly missing subtree, an empty subtree has a height of -1
+     * @param node the root of the subtree
+     * @return an integer representing the height of the subtree
+     */
+    private static int height(Node<?> node) {
+        return node == null ? -1 : node.height;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the size of a possibly missing subtree, an empty subtree has a size of 0
+     * @param node the root of the subtree
+     * @return an integer representing the number of nodes in the subtree
+     */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * An immutable node of the tree. All of its fields are final, so a node can be shared between any number of
+     * versions of the tree and read from any thread.
+     */
+    private static final class Node<E> {
+        final E data;
+        final Node<E> left;
+        final Node<E> right;
+        final int height;
+        final int size;
+
+        Node(Node<E> left, E data, Node<E> right) {
+            this.left = left;
+            this.data = data;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    /**
+     * An iterator over a fixed version of the tree. As the nodes have no parent pointers it keeps the path to the
+     * current node in an array which is sized once from the height of the tree.
+     */
+    private static final class InOrderIterator<E> implements Iterator<E> {
+        private final Node<?>[] stack;
+        private int top;
+
+        InOrderIterator(Node<E> root) {
+            this.stack = new Node<?>[height(root) + 1];
+            pushLeft(root);
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Determines if there is data left to iterate over
+         * @return true or false
+         */
+        public boolean hasNext() {
+            return top > 0;
+        }
+
+        /**
+         * Running Time --> O(1) amortized
+         * Returns the next data in order and advances the iterator
+         * @return the next data in the tree
+         */
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (top == 0){
+                throw new NoSuchElementException();
+            }
+
+            Node<E> node = (Node<E>) stack[--top];
+            stack[top] = null;
+            pushLeft(node.right);
+            return node.data;
+        }
+
+        /**
+         * Running Time --> O(log n)
+         * Pushes the path from node down to the smallest node of its subtree
+         * @param node the root of the subtree
+         */
+        private void pushLeft(Node<?> node) {
+            while (node != null){
+                stack[top++] = node;
+                node = node.left;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This is a stack of longs which can hold more elements than fit on the heap. Instead of one array the elements are
+ * kept in fixed size segments. The segment on top and the few segments right below it stay in memory, and whenever
+ * there are more of them the oldest one is written out to a temporary file. As the stack is popped back down the
+ * segments are read back in one at a time, in the order they were written. Pushing and popping inside a segment is
+ * just an array access, only crossing into another segment can touch the file.
+ */
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+public class SegmentedLongStack implements Closeable {
+
+    // the number of elements in each segment, 512KB worth of longs
+    private static final int SEGMENT_SIZE = 1 << 16;
+    private static final int SEGMENT_BYTES = SEGMENT_SIZE * Long.BYTES;
+    // the number of full segments kept in memory below the top one before the oldest is written to the file
+    private static final int HOT_SEGMENTS = 2;
+
+    // the segment on top of the stack and the number of elements in it
+    private long[] top = new long[SEGMENT_SIZE];
+    private int topCount = 0;
+    // full segments which are still in memory, with the newest one last
+    private final ArrayDeque<long[]> below = new ArrayDeque<long[]>();
+    // an emptied segment kept around so crossing into a new segment does not have to allocate one
+    private long[] spare;
+    // the number of segments in the file, which are always the oldest ones
+    private long spilled = 0;
+
+    private final FileChannel file;
+    // the one buffer every segment is written and read through
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SEGMENT_BYTES).order(ByteOrder.nativeOrder());
+
+    /**
+     * Creates a stack which spills to a temporary file in the default temporary directory.
+     * @throws IOException if the file cannot be created
+     */
+    public SegmentedLongStack () throws IOException {
+        this(Files.createTempFile("stack", ".segments"));
+    }
+
+    /**
+     * Creates a stack which spills to the given file. The file is deleted when the stack is closed.
+     * @param spillFile is the file the segments are written to
+     * @throws IOException if the file cannot be opened
+     */
+    public SegmentedLongStack (Path spillFile) throws IOException {
+        this.file = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * A method which lets the user know if the stack is empty
+     * @return true if the stack is empty or false if it is not.
+     */
+    public boolean isEmpty() {
+        return topCount == 0 && below.isEmpty() && spilled == 0;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * @return the size of the stack.
+     */
+    public long size(){
+        return (spilled + below.size()) * SEGMENT_SIZE + topCount;
+    }
+
+    /**
+     * Running Time --> O(1), or O(SEGMENT_SIZE) when a segment has to be written to the file
+     * Adds an element to the top of the stack, starting a new segment if the top one is full
+     * @param x is the element to be inserted
+     * @throws UncheckedIOException if a segment cannot be written to the file
+     */
+    public void push(long x){
+        if (topCount == SEGMENT_SIZE){
+            // the oldest segment is only dropped from memory once it has safely reached the file
+            if (below.size() == HOT_SEGMENTS){
+                spill(below.peekFirst());
+                spare = below.removeFirst();
+            }
+            below.addLast(top);
+            top = spare != null ? spare : new long[SEGMENT_SIZE];
+            spare = null;
+            topCount = 0;
+        }
+        top[topCount++] = x;
+    }
+
+    /**
+     * Running Time --> O(1), or O(SEGMENT_SIZE) when a segment has to be read back from the file
+     * A method which will remove an element from the stack based on LIFO ordering.
+     * @return the element which was on top
+     * @throws UncheckedIOException if a segment cannot be read back from the file
+     */
+    public long pop(){
+        if (topCount == 0){
+            if (below.isEmpty() && spilled == 0){
+                throw new IndexOutOfBoundsException("No Elements Left to Pop");
+            }
+
+            if (below.isEmpty()){
+                load(top);
+            } else {
+                spare = top;
+                top = below.removeLast();
+            }
+            topCount = SEGMENT_SIZE;
+        }
+        return top[--topCount];
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Closes and deletes the file. The stack cannot be used afterwards.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Running Time --> O(SEGMENT_SIZE)
+     * Writes a segment to the end of the segments in the file
+     * @param segment is the segment to write
+     */
+    private void spill(long[] segment){
+        buffer.clear();
+        buffer.asLongBuffer().put(segment);
+        try {
+            long position = spilled * SEGMENT_BYTES;
+            while (buffer.hasRemaining()){
+                position += file.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        spilled++;
+    }
+
+    /**
+     * Running Time --> O(SEGMENT_SIZE)
+     * Reads the last segment in the file back into an array
+     * @param segment is the array the segment is read into
+     */
+    private void load(long[] segment){
+        spilled--;
+        buffer.clear();
+        try {
+            long position = spilled * SEGMENT_BYTES;
+            while (buffer.hasRemaining()){
+                int read = file.read(buffer, position);
+                if (read < 0){
+                    throw new IOException("The spill file ended early");
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            spilled++;
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+        buffer.asLongBuffer().get(segment);
+    }
+
+}
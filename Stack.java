@@ -3,8 +3,10 @@
  * @email bernheim@brandeis.edu
  *
  * This is a class which represents a normal stack. All operations of push and pop are under last in first out (LIFO)
- * operations. Methods within the stack are isEmpty, push, pop, size and toString. The stack is implemented using an
- * array since all operations can be performed in constant time.
+ * operations. Methods within the stack are isEmpty, push, pop, pushAll, popInto, size and toString. The stack is
+ * implemented using an array since all operations can be performed in constant time. The array doubles when it is full
+ * and halves when it is only a quarter full, so the stack can hold any number of elements and gives memory back once
+ * they are popped. IntStack and LongStack are the same stack for ints and longs without boxing them.
  */
 
 
@@ -12,31 +14,37 @@ import java.util.Arrays;
 
 public class Stack<T> {
 
+    // the longest array every JVM can allocate, a few words short of Integer.MAX_VALUE for the array header
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
     /**
      * When a Stack is created, top is set to -1 because it is initially empty and the default constructor is used.
      */
     // top is used to keep track of the index of the most recent element that was pushed into the array
     private int top = -1;
-    // this array is used as the stack
+    // the capacity the stack starts with and never shrinks below
     private int totalCapacity = 100;
+    // this array is used as the stack
+    private T[] array;
 
 
     /**
      * If the user chooses the default constructor can be overridden with the following constructor which allows the
-     * user to control the maximum size of the stack. Otherwise the default constructor is used.
+     * user to control the initial size of the stack. Otherwise the default constructor is used.
      */
-    public Stack (int maxCapacity) {
-        this.totalCapacity = maxCapacity;
+    @SuppressWarnings("unchecked")
+    public Stack (int initialCapacity) {
+        this.totalCapacity = Math.max(initialCapacity, 1);
+        this.array = (T[]) new Object[totalCapacity];
     }
 
     /**
      * The default constructor.
      */
     public Stack () {
+        this(100);
     }
 
-    private T[] array = (T[]) new Object[totalCapacity];
-
 
     /**
      * Running Time --> O(1) since this method contains only if and return statements
@@ -51,33 +59,68 @@ public class Stack<T> {
     }
 
     /**
-     * Running Time --> O(1)
-     * Adds an element to the proper place in the stack if there is room
+     * Running Time --> O(1) amortized
+     * Adds an element to the proper place in the stack, doubling the array first if there is no room
      * @param x is the element to be inserted
      */
     public void push(T x){
-        if (top + 1 < array.length){
-            array[top+1] = x;
-            top++;
-        } else {
-            throw new IndexOutOfBoundsException("The Stack is Full");
+        if (top + 1 == array.length){
+            grow(top + 2L);
         }
+        array[top+1] = x;
+        top++;
     }
 
     /**
-     * Running Time --> O(1)
-     * A method which will remove an element from the stack based on LIFO ordering.
+     * Running Time --> O(k) amortized
+     * Pushes every element of an array in order, so the last one ends up on top. The array of the stack grows at most
+     * once.
+     * @param elements are the elements to be inserted
+     */
+    public void pushAll(T[] elements){
+        long needed = top + 1L + elements.length;
+        if (needed > array.length){
+            grow(needed);
+        }
+        System.arraycopy(elements, 0, array, top + 1, elements.length);
+        top += elements.length;
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * A method which will remove an element from the stack based on LIFO ordering. The popped slot is cleared so the
+     * stack does not keep the element alive, and the array is halved once it is only a quarter full.
      */
     public T pop(){
         if (!isEmpty()) {
             T temp = array[top];
+            array[top] = null;
             top--;
+            shrink();
             return temp;
         } else {
             throw new IndexOutOfBoundsException("No Elements Left to Pop");
         }
     }
 
+    /**
+     * Running Time --> O(k) amortized
+     * Pops elements into an array until either the array is full or the stack is empty. The first element of the
+     * array is the one which was on top.
+     * @param destination is the array the popped elements are written into
+     * @return the number of elements which were popped
+     */
+    public int popInto(T[] destination){
+        int count = Math.min(destination.length, top + 1);
+        for (int i = 0; i < count; i++){
+            destination[i] = array[top - i];
+            array[top - i] = null;
+        }
+        top -= count;
+        shrink();
+        return count;
+    }
+
     /**
      * Running Time --> O(1)
      * @return the size of the stack.
@@ -87,11 +130,54 @@ public class Stack<T> {
     }
 
     /**
-     * Running Time --> O(1)
-     * @return A string representation of the stack.
+     * Running Time --> O(n)
+     * @return A string representation of the stack, from the bottom to the top.
      */
     public String toString(){
-        return Arrays.toString(array);
+        return Arrays.toString(Arrays.copyOf(array, top + 1));
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * Halves the array while it is at most a quarter full, but never below the initial capacity
+     */
+    private void shrink(){
+        int capacity = array.length;
+        while (capacity / 2 >= totalCapacity && top + 1 <= capacity / 4){
+            capacity /= 2;
+        }
+        if (capacity != array.length){
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Doubles the array until it can hold a number of elements. The doubling is worked out in a long so it cannot
+     * overflow, and stops at MAX_CAPACITY.
+     * @param needed is the number of elements the array has to hold
+     */
+    private void grow(long needed){
+        if (needed > MAX_CAPACITY){
+            throw new IllegalStateException("The Stack cannot hold any more elements");
+        }
+        long capacity = array.length;
+        while (capacity < needed){
+            capacity *= 2;
+        }
+        resize((int) Math.min(capacity, MAX_CAPACITY));
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Moves the elements into an array of a new capacity
+     * @param capacity is the length of the new array
+     */
+    private void resize(int capacity){
+        if (capacity < 0 || capacity > MAX_CAPACITY){
+            throw new IllegalStateException("The Stack cannot hold any more elements");
+        }
+        array = Arrays.copyOf(array, capacity);
     }
 
 }
@@ -0,0 +1,310 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * @author Samuel Bernheim
+ * This is a hash table of ints with the same operations as intHashTable, laid out the way Swiss tables are. Next to
+ * the array of elements there is an array of control bytes, one per slot, which says whether the slot is empty, was
+ * deleted, or holds an element, and in that case also holds 7 bits of the element's hash. The slots are split into
+ * groups of 16 and the control bytes of a whole group are read as two longs and compared against the hash bits all at
+ * once, so a search only looks at the elements whose hash bits match, which is almost never more than one. Because
+ * the control bytes tell the slots apart, every int, 0 included, can be stored.
+ */
+
+public class SwissIntHashTable {
+
+    private static final int GROUP_SIZE = 16;
+    // the most groups a table can have, as many as the 25 bits of h1 can pick the first group from
+    private static final int MAX_GROUPS = 1 << 25;
+    // a control byte with the high bit clear holds the low 7 bits of the hash of the element in its slot
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    // the table grows once 7/8 of its slots are either used or deleted
+    private static final int MAX_LOAD_NUMERATOR = 7;
+    private static final int MAX_LOAD_DENOMINATOR = 8;
+
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+    // reads eight control bytes at a time as a long, with the first of them in the lowest byte
+    private static final VarHandle CONTROL_WORD = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private byte[] control;
+    private int[] slots;
+    private int groupMask;
+    private int numOfElements = 0;
+    // the number of empty slots which can still be used before the table has to grow
+    private int growthLeft;
+
+    public SwissIntHashTable(int tableSize) {
+        if (tableSize > MAX_GROUPS * GROUP_SIZE){
+            throw new IllegalArgumentException("A table cannot have more than " + MAX_GROUPS * GROUP_SIZE + " slots");
+        }
+
+        int groups = 1;
+        while (groups * GROUP_SIZE < tableSize){
+            groups *= 2;
+        }
+        allocate(groups);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the total number of elements the hash table can contain
+     * @return an int representing the total number of elements the hash table can contain
+     */
+    public int totalCapcity() {
+        return slots.length;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the number of elements which have been inserted into the hash table
+     * @return an int representing the number of elements which have been inserted into the hash table
+     */
+    public int size() {
+        return this.numOfElements;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Inserts an element into the first empty or deleted slot along its probe sequence, unless it is already in the
+     * hash table
+     * @param process is the element which will be inserted
+     */
+    public void insert(int process) {
+        int hash = mix(process);
+        if (find(process, hash) >= 0){
+            return;
+        }
+
+        int slot = firstFree(hash);
+        if (growthLeft == 0 && control[slot] == EMPTY){
+            rehash();
+            slot = firstFree(hash);
+        }
+
+        if (control[slot] == EMPTY){
+            growthLeft--;
+        }
+        control[slot] = h2(hash);
+        slots[slot] = process;
+        numOfElements++;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Searches the hash table for a specific value
+     * @param process is the value which is being searched for in the hash table
+     * @return true or false if the value is found in the table or not
+     */
+    public boolean search(int process) {
+        return find(process, mix(process)) >= 0;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Deletes a value from the hash table. Its slot only has to be marked as deleted if a search could have gone past
+     * it, which is when the eight control bytes it shares a long with have no empty slot left, otherwise the slot
+     * simply becomes empty again.
+     * @param process is the value which is will be deleted from the hash table
+     */
+    public void delete(int process) {
+        int slot = find(process, mix(process));
+        if (slot < 0){
+            return;
+        }
+
+        if (matchEmpty(word(slot & -8)) != 0){
+            control[slot] = EMPTY;
+            growthLeft++;
+        } else {
+            control[slot] = DELETED;
+        }
+        numOfElements--;
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Finds the slot of an element by walking its probe sequence eight control bytes at a time, the low half of a
+     * group and then its high half, reading each long of control bytes only once. Only the slots whose control byte
+     * matches the element's 7 hash bits are compared, and the first eight control bytes with an empty slot among them
+     * end the search, so the high half of a group is not even read when the low half already has an empty slot. That
+     * is safe because a slot only becomes empty again while the eight control bytes it shares a long with still have
+     * another empty slot, so eight control bytes with an empty slot were never full and no insert ever went past them.
+     * @param process is the element which is being searched for
+     * @param hash is the hash of the element
+     * @return the slot of the element or -1 if it is not in the table
+     */
+    private int find(int process, int hash) {
+        byte[] control = this.control;
+        int[] slots = this.slots;
+        long pattern = LSBS * h2(hash);
+        int group = h1(hash) & groupMask;
+        for (int step = 1; ; step++){
+            int base = group * GROUP_SIZE;
+            long low = (long) CONTROL_WORD.get(control, base);
+            for (long match = matchByte(low, pattern); match != 0; match &= match - 1){
+                int slot = base + (Long.numberOfTrailingZeros(match) >>> 3);
+                if (slots[slot] == process){
+                    return slot;
+                }
+            }
+            if (matchEmpty(low) != 0){
+                return -1;
+            }
+
+            long high = (long) CONTROL_WORD.get(control, base + 8);
+            for (long match = matchByte(high, pattern); match != 0; match &= match - 1){
+                int slot = base + 8 + (Long.numberOfTrailingZeros(match) >>> 3);
+                if (slots[slot] == process){
+                    return slot;
+                }
+            }
+            if (matchEmpty(high) != 0){
+                return -1;
+            }
+
+            // triangular probing visits every group exactly once when the number of groups is a power of two
+            group = (group + step) & groupMask;
+        }
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Finds the first empty or deleted slot along the probe sequence of a hash. There is always one, since the table
+     * grows before it is full.
+     * @param hash is the hash of the element which will be placed
+     * @return the free slot
+     */
+    private int firstFree(int hash) {
+        int group = h1(hash) & groupMask;
+        for (int step = 1; ; step++){
+            int base = group * GROUP_SIZE;
+            long match = word(base) & MSBS;
+            if (match != 0){
+                return base + (Long.numberOfTrailingZeros(match) >>> 3);
+            }
+
+            match = word(base + 8) & MSBS;
+            if (match != 0){
+                return base + 8 + (Long.numberOfTrailingZeros(match) >>> 3);
+            }
+            group = (group + step) & groupMask;
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Moves every element into a fresh table. If deleted slots take up much of the table it is only cleaned up and
+     * keeps its size, otherwise it doubles in size.
+     */
+    private void rehash() {
+        byte[] oldControl = control;
+        int[] oldSlots = slots;
+
+        int groups = groupMask + 1;
+        if (numOfElements >= slots.length / (2 * MAX_LOAD_DENOMINATOR) * MAX_LOAD_NUMERATOR){
+            if (groups == MAX_GROUPS){
+                throw new IllegalStateException("The hash table cannot hold any more elements");
+            }
+            groups *= 2;
+        }
+        allocate(groups);
+
+        for (int i = 0; i < oldSlots.length; i++){
+            if (oldControl[i] >= 0){
+                int hash = mix(oldSlots[i]);
+                int slot = firstFree(hash);
+                control[slot] = h2(hash);
+                slots[slot] = oldSlots[i];
+                growthLeft--;
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Replaces the table with an empty one of the given number of groups
+     * @param groups is the number of groups, a power of two
+     */
+    private void allocate(int groups) {
+        control = new byte[groups * GROUP_SIZE];
+        slots = new int[groups * GROUP_SIZE];
+        Arrays.fill(control, EMPTY);
+        groupMask = groups - 1;
+        // the number of slots is a multiple of the denominator, so dividing first is exact and cannot overflow
+        growthLeft = slots.length / MAX_LOAD_DENOMINATOR * MAX_LOAD_NUMERATOR;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Reads eight control bytes as one long
+     * @param index is the index of the first of the bytes, a multiple of 8
+     * @return the bytes packed into a long
+     */
+    private long word(int index) {
+        return (long) CONTROL_WORD.get(control, index);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Finds the bytes of a word which equal the byte repeated in pattern. A byte right above a match may be reported
+     * as well, which costs nothing more than one extra comparison of an element.
+     * @param word is the eight control bytes
+     * @param pattern is the byte to look for repeated eight times
+     * @return a word with the high bit set in each matching byte
+     */
+    private static long matchByte(long word, long pattern) {
+        long x = word ^ pattern;
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Finds the empty bytes of a word, the only control bytes with the high bit set and the second lowest bit clear
+     * @param word is the eight control bytes
+     * @return a word with the high bit set in each empty byte
+     */
+    private static long matchEmpty(long word) {
+        return word & ~(word << 6) & MSBS;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the part of the hash which picks the first group to probe
+     * @param hash is the hash of an element
+     * @return the high 25 bits of the hash
+     */
+    private static int h1(int hash) {
+        return hash >>> 7;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gives the part of the hash which is kept in the control byte
+     * @param hash is the hash of an element
+     * @return the low 7 bits of the hash
+     */
+    private static byte h2(int hash) {
+        return (byte) (hash & 0x7F);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Scrambles the bits of a value with the murmur3 finalizer, so that every bit of the value affects every bit of
+     * the result and sequential or otherwise patterned values still spread evenly over the table
+     * @param x is the value to scramble
+     * @return the scrambled value
+     */
+    private static int mix(int x) {
+        x ^= x >>> 16;
+        x *= 0x85EBCA6B;
+        x ^= x >>> 13;
+        x *= 0xC2B2AE35;
+        x ^= x >>> 16;
+        return x;
+    }
+}
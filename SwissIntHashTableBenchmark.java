@@ -0,0 +1,122 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This compares the search speed of SwissIntHashTable against the cuckoo hashing intHashTable. For each load factor
+ * of the Swiss table from 1/2 to 7/8 both tables are filled with the same random keys, and then both are searched
+ * for keys which are in them and for keys which are not. The cuckoo table picks its own size, so it holds the same
+ * keys at whatever load it grows to, and the memory each table spends per key is printed next to the times. Every
+ * measurement is repeated and the fastest round is kept, since the slower ones mostly measure the JIT compiler and the
+ * garbage collector.
+ *
+ * Usage: java SwissIntHashTableBenchmark [slots in the Swiss table] [rounds]
+ */
+
+
+import java.util.SplittableRandom;
+
+public class SwissIntHashTableBenchmark {
+
+    // keeps the results of the searches alive so the JIT compiler cannot drop them
+    private static long sink;
+
+    public static void main(String[] args) {
+        int capacity = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 22;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%6s %10s %14s %14s %14s %14s %12s %12s%n", "load", "keys", "swiss hit", "cuckoo hit",
+                "swiss miss", "cuckoo miss", "swiss B/key", "cuckoo B/key");
+        for (int eighths = 4; eighths <= 7; eighths++){
+            int n = (int) ((long) capacity * eighths / 8);
+            SplittableRandom random = new SplittableRandom(eighths);
+            // even keys go into the tables and odd keys are the misses
+            int[] keys = new int[n];
+            int[] misses = new int[n];
+            for (int i = 0; i < n; i++){
+                keys[i] = random.nextInt() & ~1;
+                misses[i] = random.nextInt() | 1;
+            }
+
+            SwissIntHashTable swiss = new SwissIntHashTable(capacity);
+            intHashTable cuckoo = new intHashTable(capacity);
+            for (int key : keys){
+                swiss.insert(key);
+                cuckoo.insert(key);
+            }
+            if (swiss.totalCapcity() != capacity){
+                throw new IllegalStateException("the Swiss table grew, so it is not at the load being measured");
+            }
+
+            // the keys are searched in a different order than they were inserted
+            shuffle(keys, random);
+            double swissHit = Double.MAX_VALUE;
+            double cuckooHit = Double.MAX_VALUE;
+            double swissMiss = Double.MAX_VALUE;
+            double cuckooMiss = Double.MAX_VALUE;
+            for (int round = 0; round < rounds; round++){
+                swissHit = Math.min(swissHit, searchSwiss(swiss, keys, true));
+                cuckooHit = Math.min(cuckooHit, searchCuckoo(cuckoo, keys, true));
+                swissMiss = Math.min(swissMiss, searchSwiss(swiss, misses, false));
+                cuckooMiss = Math.min(cuckooMiss, searchCuckoo(cuckoo, misses, false));
+            }
+            // a Swiss slot costs an int and a control byte, a cuckoo slot just an int
+            double swissBytes = (double) swiss.totalCapcity() * (Integer.BYTES + 1) / swiss.size();
+            double cuckooBytes = (double) cuckoo.totalCapcity() * Integer.BYTES / cuckoo.size();
+            System.out.printf("%6.3f %10d %11.1f ns %11.1f ns %11.1f ns %11.1f ns %12.1f %12.1f%n", eighths / 8.0,
+                    swiss.size(), swissHit, cuckooHit, swissMiss, cuckooMiss, swissBytes, cuckooBytes);
+        }
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Searches the Swiss table for every key and checks that each one is found or not as expected
+     * @return the average time of a search in nanoseconds
+     */
+    private static double searchSwiss(SwissIntHashTable table, int[] keys, boolean expected) {
+        long begin = System.nanoTime();
+        int found = 0;
+        for (int key : keys){
+            if (table.search(key)){
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        check(found, keys.length, expected);
+        sink += found;
+        return (double) elapsed / keys.length;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Searches the cuckoo table for every key and checks that each one is found or not as expected
+     * @return the average time of a search in nanoseconds
+     */
+    private static double searchCuckoo(intHashTable table, int[] keys, boolean expected) {
+        long begin = System.nanoTime();
+        int found = 0;
+        for (int key : keys){
+            if (table.search(key)){
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        check(found, keys.length, expected);
+        sink += found;
+        return (double) elapsed / keys.length;
+    }
+
+    private static void check(int found, int searched, boolean expected) {
+        if (found != (expected ? searched : 0)){
+            throw new IllegalStateException("found " + found + " of " + searched + " keys");
+        }
+    }
+
+    private static void shuffle(int[] keys, SplittableRandom random) {
+        for (int i = keys.length - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            int swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * @author Samuel Bernheim
+ *
+ * This is a Chase-Lev work stealing deque. It belongs to one owner thread, which uses it like Stack: push and pop
+ * work on the same end in last in first out order and only use plain reads and writes and a single fence, except when
+ * they fight a thief for the very last element. Any other thread may steal from the other end, taking the oldest
+ * element with one compare and swap and without ever blocking the owner. The elements are kept in a circular array
+ * which the owner doubles when it is full, and thieves still reading the old array see the same elements there.
+ */
+
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+public class WorkStealingDeque<T> {
+
+    // the largest power of two an array can be
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private static final VarHandle TOP;
+    private static final VarHandle BOTTOM;
+    private static final VarHandle ARRAY;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TOP = lookup.findVarHandle(WorkStealingDeque.class, "top", long.class);
+            BOTTOM = lookup.findVarHandle(WorkStealingDeque.class, "bottom", long.class);
+            ARRAY = lookup.findVarHandle(WorkStealingDeque.class, "array", Object[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // the index of the oldest element, which thieves steal from and only ever increases
+    private volatile long top = 0;
+    // the index one past the newest element, which only the owner changes
+    private volatile long bottom = 0;
+    // the circular array, element i of the deque is at index i modulo its length, which is a power of two
+    private volatile Object[] array;
+
+    /**
+     * The initial capacity is rounded up to a power of two and only decides how many elements fit before the array
+     * has to grow.
+     */
+    public WorkStealingDeque (int initialCapacity) {
+        if (initialCapacity > MAX_CAPACITY){
+            throw new IllegalArgumentException("The deque cannot start with more than " + MAX_CAPACITY + " slots");
+        }
+
+        int capacity = 2;
+        while (capacity < initialCapacity){
+            capacity *= 2;
+        }
+        this.array = new Object[capacity];
+    }
+
+    /**
+     * The default constructor.
+     */
+    public WorkStealingDeque () {
+        this(64);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * A method which lets the user know if the deque is empty. While other threads are stealing this is only an
+     * estimate.
+     * @return true if the deque is empty or false if it is not.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Gets the number of elements in the deque. While other threads are stealing this is only an estimate.
+     * @return the size of the deque.
+     */
+    public int size(){
+        long size = (long) BOTTOM.getAcquire(this) - (long) TOP.getAcquire(this);
+        return (int) Math.max(size, 0);
+    }
+
+    /**
+     * Running Time --> O(1) amortized
+     * Adds an element to the owner's end of the deque, doubling the array first if there is no room. Only the owner
+     * may call this.
+     * @param x is the element to be inserted
+     */
+    public void push(T x){
+        if (x == null){
+            throw new NullPointerException("The deque cannot hold null");
+        }
+
+        long b = (long) BOTTOM.getOpaque(this);
+        long t = (long) TOP.getAcquire(this);
+        Object[] a = (Object[]) ARRAY.getOpaque(this);
+        if (b - t >= a.length){
+            a = grow(a, t, b);
+        }
+
+        a[(int) b & (a.length - 1)] = x;
+        // the release makes the element visible to any thief which sees the new bottom
+        BOTTOM.setRelease(this, b + 1);
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Removes the newest element, the one the owner pushed last, and clears its slot so the array does not keep it
+     * alive. Only the owner may call this.
+     * @return the newest element or null if the deque is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T pop(){
+        long b = (long) BOTTOM.getOpaque(this) - 1;
+        Object[] a = (Object[]) ARRAY.getOpaque(this);
+        BOTTOM.setOpaque(this, b);
+        // the new bottom has to be visible to thieves before top is read, or both could take the same element
+        VarHandle.fullFence();
+        long t = (long) TOP.getOpaque(this);
+
+        if (t > b){
+            // the deque was already empty
+            BOTTOM.setOpaque(this, b + 1);
+            return null;
+        }
+
+        int index = (int) b & (a.length - 1);
+        T x = (T) a[index];
+        if (t == b){
+            // this is the last element, so the owner races the thieves for it on top
+            boolean won = TOP.compareAndSet(this, t, t + 1);
+            BOTTOM.setOpaque(this, b + 1);
+            if (!won){
+                return null;
+            }
+        }
+        // the element is the owner's alone now, either because top is below it or because the owner won it on top,
+        // so no thief can take it any more and its slot can be cleared
+        a[index] = null;
+        return x;
+    }
+
+    /**
+     * Running Time --> O(1)
+     * Takes the oldest element from the thieves' end of the deque. Any thread may call this. The slot of a stolen
+     * element is not cleared, since by the time the thief could clear it the owner may already have pushed into it
+     * again, possibly the very same element, so the array keeps a stolen element alive until a push overwrites its
+     * slot or the array grows. That is never more than one array's worth of elements.
+     * @return the oldest element, or null if the deque is empty or another thread took the element first
+     */
+    @SuppressWarnings("unchecked")
+    public T steal(){
+        long t = (long) TOP.getAcquire(this);
+        // top has to be read before bottom, or an element popped by the owner in between could be stolen too
+        VarHandle.fullFence();
+        long b = (long) BOTTOM.getAcquire(this);
+        if (t >= b){
+            return null;
+        }
+
+        Object[] a = (Object[]) ARRAY.getAcquire(this);
+        T x = (T) a[(int) t & (a.length - 1)];
+        if (!TOP.compareAndSet(this, t, t + 1)){
+            return null;
+        }
+        return x;
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Copies the elements into a circular array twice the size. Thieves which still hold the old array find the same
+     * elements in it, since the owner never writes to it again.
+     * @param a is the current array
+     * @param t is the index of the oldest element
+     * @param b is the index one past the newest element
+     * @return the new array
+     */
+    private Object[] grow(Object[] a, long t, long b){
+        if (a.length == MAX_CAPACITY){
+            throw new IllegalStateException("The deque cannot hold any more elements");
+        }
+        int capacity = a.length * 2;
+
+        Object[] bigger = new Object[capacity];
+        for (long i = t; i < b; i++){
+            bigger[(int) i & (capacity - 1)] = a[(int) i & (a.length - 1)];
+        }
+        ARRAY.setRelease(this, bigger);
+        return bigger;
+    }
+
+}
@@ -1,3 +1,5 @@
+import java.util.Random;
+
 /**
  * @author Samuel Bernheim
  * @email bernheim@brandeis.edu
@@ -5,34 +7,41 @@
 
 public class intHashTable {
 
-    int size;
+    // the longest chain of evictions an insertion follows before it gives up and uses the stash
+    private static final int MAX_KICKS = 64;
+    // the number of elements which can be kept aside when they could not be placed in either of their slots
+    private static final int STASH_SIZE = 4;
+    // cuckoo hashing with two choices stops finding room for new elements at about half full
+    private static final double MAX_LOAD = .5;
+    // the fewest slots of the old table moved over by each insert or delete while the table is being resized
+    private static final int MIN_MIGRATION_STEP = 2;
+
     private int numOfElements = 0;
-    private int[] hashTable;
-    private int val;
+    // 0 marks an empty slot, so the element 0 is kept out of the slots in a place of its own
+    private boolean hasZero = false;
+    private final Random random = new Random();
+    // when true the table grows a little on every operation instead of all at once
+    private final boolean incrementalResize;
+    private Table table;
+    // the table the elements are being moved out of during an incremental resize, null otherwise
+    private Table old;
+    // the next slot of the old table to move over
+    private int migrated;
+    // the number of slots of the old table moved over by each insert or delete during the running resize
+    private int migrationStep;
 
     public intHashTable(int tableSize) {
-        this.size = tableSize;
-        hashTable = new int[size];
-    }
-
-    /**
-     * Running Time --> O(1)
-     * Generates the key based on the process ID using the first hash function
-     * @param process is the value for which a key will be generated
-     * @return the associated key for the process
-     */
-    private int hOne(int process) {
-        return Math.abs(process % size/2);
+        this(tableSize, false);
     }
 
     /**
-     * Running Time --> O(1)
-     * Generates the key based on the process ID using the second hash function
-     * @param process is the value for which a key with be generated
-     * @return the associated key for the process
+     * With an incremental resize, growing the table does not move every element at once. Instead each insert and
+     * delete moves a few slots of the old table over to the new one, and searches look in both until the old table is
+     * empty, so no single operation pays for the whole resize.
      */
-    private int hTwo(int process) {
-        return Math.abs(size/2+(process % size/2));
+    public intHashTable(int tableSize, boolean incrementalResize) {
+        this.table = new Table(Math.max(tableSize, 2), random);
+        this.incrementalResize = incrementalResize;
     }
 
     /**
@@ -41,7 +50,7 @@ public class intHashTable {
      * @return an int representing the total number of elements the hash table can contain
      */
     public int totalCapcity() {
-        return this.size;
+        return table.size;
     }
 
     /**
@@ -54,44 +63,30 @@ public class intHashTable {
     }
 
     /**
-     * Running Time --> O(1)
-     * Inserts an element into the hash table following the appropriate rules for cuckoo hashing
+     * Running Time --> O(1) expected
+     * Inserts an element into the hash table following the appropriate rules for cuckoo hashing. If both of its
+     * slots are taken the element takes one of them anyway and the element it evicts moves to its own other slot,
+     * which may evict another element and so on. A chain which runs for more than MAX_KICKS evictions ends with the
+     * last evicted element in the stash, and only once the stash is full is the table rehashed.
      * @param process is the element which will be inserted
      */
     public void insert(int process) {
-        if (hashTable[hOne(process)] == 0) {
-            hashTable[hOne(process)] = process;
-            numOfElements++;
-        } else if (hashTable[hTwo(hashTable[hOne(process)])] == 0) {
-            hashTable[hTwo(process)] = hashTable[hOne(process)];
-            hashTable[hOne(process)] = process;
-            numOfElements++;
-        } else {
-            throw new IllegalStateException("Unresolved Collision");
+        migrate();
+        if (process == 0) {
+            if (!hasZero) {
+                hasZero = true;
+                numOfElements++;
+            }
+            return;
         }
 
-        performRehash();
-    }
-
-    /**
-     * Running Time --> O(n)
-     * Rehashes the hash table when the load factor becomes >= to .6
-     */
-    private void performRehash() {
-        double loadFactor = (double) numOfElements / (double) size;
-
-        if (loadFactor >= .6) {
-            int[] oldTable = hashTable;
-            size *= 2;
-            hashTable = new int[2*size];
-            numOfElements = 0;
-
-            for (int i : oldTable){
-                if (i != 0){
-                    insert(i);
-                }
-            }
+        if (search(process)) {
+            return;
         }
+
+        numOfElements++;
+        add(process);
+        performRehash();
     }
 
     /**
@@ -101,7 +96,10 @@ public class intHashTable {
      * @return true or false if the value is found in the table or not
      */
     public boolean search(int process) {
-        return hashTable[hOne(process)] == process || hashTable[hTwo(process)] == process;
+        if (process == 0) {
+            return hasZero;
+        }
+        return table.contains(process) || (old != null && old.contains(process));
     }
 
     /**
@@ -110,10 +108,313 @@ public class intHashTable {
      * @param process is the value which is will be deleted from the hash table
      */
     public void delete(int process){
-        if (hashTable[hOne(process)] == process) {
-            hashTable[hOne(process)] = 0;
-        } else if (hashTable[hTwo(process)] == process) {
-            hashTable[hTwo(process)] = 0;
+        migrate();
+        if (process == 0) {
+            if (hasZero) {
+                hasZero = false;
+                numOfElements--;
+            }
+            return;
+        }
+
+        if (table.remove(process) || (old != null && old.remove(process))) {
+            numOfElements--;
+        }
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Adds an element which is already counted in numOfElements to the current table, growing the table for as long
+     * as there is no room for it. While a resize is running the table was only just doubled, so it is rebuilt with new
+     * seeds instead, the same way moveFromOld does.
+     * @param process is the element which will be added
+     */
+    private void add(int process) {
+        int homeless = table.add(process);
+        while (homeless != 0) {
+            if (old != null) {
+                table = rebuild(table, table.size);
+            } else {
+                grow();
+            }
+            homeless = table.add(homeless);
+        }
+    }
+
+    /**
+     * Running Time --> O(1) amortized, or O(n) if the table is resized all at once
+     * Grows the table when the load factor reaches MAX_LOAD
+     */
+    private void performRehash() {
+        double loadFactor = (double) numOfElements / (double) table.size;
+
+        if (loadFactor >= MAX_LOAD) {
+            grow();
+        }
+    }
+
+    /**
+     * Running Time --> O(1) amortized, or O(n) if the table is resized all at once
+     * Replaces the table with one twice its size. With an incremental resize the elements are moved over later by
+     * migrate, otherwise they are all moved over right away. The migration step is picked so that the old table is
+     * empty long before the new one reaches MAX_LOAD: every insert which can bring it closer runs migrate first, and
+     * the old slots are spread over half of the inserts left until then. Finishing only right at MAX_LOAD would leave
+     * the new table nearly as full as cuckoo hashing allows while the old one is still being emptied, and a table
+     * that full keeps failing to place elements, which it can then only answer by rebuilding at the same size.
+     */
+    private void grow() {
+        // the migration step should have emptied the old table by now, but if a resize is somehow still running it
+        // has to finish first, since replacing old would lose every element not yet moved over
+        while (old != null) {
+            migrate();
+        }
+
+        if (incrementalResize) {
+            old = table;
+            table = new Table(2 * old.size, random);
+            migrated = 0;
+            long insertsLeft = Math.max(1, ((long) Math.ceil(MAX_LOAD * table.size) - numOfElements) / 2);
+            migrationStep = (int) Math.max(MIN_MIGRATION_STEP, (old.slots.length + insertsLeft - 1) / insertsLeft);
+            return;
+        }
+
+        table = rebuild(table, 2 * table.size);
+    }
+
+    /**
+     * Running Time --> O(n)
+     * Builds a table of the given size holding every element of another table. The elements are moved over in a
+     * plain loop, and if one of them cannot be placed the new table is thrown away and built again with new seeds.
+     * @param from the table whose elements are moved over
+     * @param size the size of the new table
+     * @return the new table
+     */
+    private Table rebuild(Table from, int size) {
+        for (int attempt = 1; ; attempt++) {
+            Table to = new Table(size, random);
+            if (to.addAll(from)) {
+                return to;
+            }
+
+            // failing over and over means the elements simply do not fit, so the new table is made larger
+            if (attempt % 8 == 0) {
+                size *= 2;
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(migrationStep)
+     * Moves the next migrationStep slots of the old table over to the current table while an incremental resize is
+     * running, and the stash of the old table once every slot has been moved
+     */
+    private void migrate() {
+        if (old == null) {
+            return;
+        }
+
+        int end = Math.min(migrated + migrationStep, old.slots.length);
+        for (; migrated < end; migrated++) {
+            int process = old.slots[migrated];
+            if (process != 0) {
+                old.slots[migrated] = 0;
+                moveFromOld(process);
+            }
+        }
+
+        if (migrated == old.slots.length) {
+            Table done = old;
+            old = null;
+            for (int i = 0; i < done.stashCount; i++) {
+                moveFromOld(done.stash[i]);
+            }
+        }
+    }
+
+    /**
+     * Running Time --> O(1) expected
+     * Moves an element out of the old table into the current one. In the rare case that it does not fit, the current
+     * table is rebuilt with new seeds right away, since it cannot grow while the old table is still being emptied.
+     * @param process is the element which will be moved
+     */
+    private void moveFromOld(int process) {
+        int homeless = table.add(process);
+        while (homeless != 0) {
+            table = rebuild(table, table.size);
+            homeless = table.add(homeless);
+        }
+    }
+
+    /**
+     * A single cuckoo hash table: an array split into two halves, one for each hash function, and a small stash for
+     * the elements which did not fit into either half.
+     */
+    private static class Table {
+        final int size;
+        final int[] slots;
+        final int[] stash = new int[STASH_SIZE];
+        int stashCount = 0;
+        final int seedOne;
+        final int seedTwo;
+
+        Table(int size, Random random) {
+            this.size = size;
+            this.slots = new int[size];
+            this.seedOne = random.nextInt();
+            this.seedTwo = random.nextInt();
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Generates the key based on the process ID using the first hash function
+         * @param process is the value for which a key will be generated
+         * @return the associated key for the process
+         */
+        int hOne(int process) {
+            return reduce(mix(process ^ seedOne), size/2);
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Generates the key based on the process ID using the second hash function
+         * @param process is the value for which a key with be generated
+         * @return the associated key for the process
+         */
+        int hTwo(int process) {
+            return size/2 + reduce(mix(process ^ seedTwo), size/2);
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Scrambles the bits of a value with the murmur3 finalizer, so that every bit of the value affects every bit of
+         * the result and sequential or otherwise patterned values still spread evenly over the table
+         * @param x is the value to scramble
+         * @return the scrambled value
+         */
+        static int mix(int x) {
+            x ^= x >>> 16;
+            x *= 0x85EBCA6B;
+            x ^= x >>> 13;
+            x *= 0xC2B2AE35;
+            x ^= x >>> 16;
+            return x;
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Maps a hash evenly onto the range [0, n) by treating it as an unsigned fraction of n, which works for
+         * negative hashes and needs no division
+         * @param hash is the hash to map
+         * @param n is the size of the range
+         * @return a value in the range [0, n)
+         */
+        static int reduce(int hash, int n) {
+            return (int) (((hash & 0xFFFFFFFFL) * n) >>> 32);
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Looks for an element in its two slots and in the stash
+         * @param process is the value which is being searched for
+         * @return true or false if the value is in the table or not
+         */
+        boolean contains(int process) {
+            if (slots[hOne(process)] == process || slots[hTwo(process)] == process) {
+                return true;
+            }
+
+            for (int i = 0; i < stashCount; i++) {
+                if (stash[i] == process) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Running Time --> O(1)
+         * Removes an element from its slot or from the stash
+         * @param process is the value which will be removed
+         * @return true if the value was in the table
+         */
+        boolean remove(int process) {
+            if (slots[hOne(process)] == process) {
+                slots[hOne(process)] = 0;
+                return true;
+            } else if (slots[hTwo(process)] == process) {
+                slots[hTwo(process)] = 0;
+                return true;
+            }
+
+            for (int i = 0; i < stashCount; i++) {
+                if (stash[i] == process) {
+                    stash[i] = stash[--stashCount];
+                    stash[stashCount] = 0;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Running Time --> O(MAX_KICKS)
+         * Places an element into one of its two slots, evicting the elements in its way along a chain of at most
+         * MAX_KICKS evictions, and puts the element left over at the end of a longer chain into the stash
+         * @param process is the element which will be placed
+         * @return 0 if every element found a place, or the element which was left without one because the stash is full
+         */
+        int add(int process) {
+            int one = hOne(process);
+            if (slots[one] == 0) {
+                slots[one] = process;
+                return 0;
+            }
+
+            int two = hTwo(process);
+            if (slots[two] == 0) {
+                slots[two] = process;
+                return 0;
+            }
+
+            // both slots are taken, so the element kicks out whoever is in its second slot
+            int slot = two;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int evicted = slots[slot];
+                slots[slot] = process;
+                if (evicted == 0) {
+                    return 0;
+                }
+
+                // the evicted element moves over to the other one of its two slots
+                process = evicted;
+                slot = slot == hOne(process) ? hTwo(process) : hOne(process);
+            }
+
+            if (stashCount < STASH_SIZE) {
+                stash[stashCount++] = process;
+                return 0;
+            }
+            return process;
+        }
+
+        /**
+         * Running Time --> O(n)
+         * Adds every element of another table to this one
+         * @param from the table whose elements are added
+         * @return true if they all found a place or false if one of them did not
+         */
+        boolean addAll(Table from) {
+            for (int process : from.slots) {
+                if (process != 0 && add(process) != 0) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < from.stashCount; i++) {
+                if (add(from.stash[i]) != 0) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
-}
\ No newline at end of file
+}